@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares BitParallelLevenshtein with the row-by-row dynamic programming it
+ * replaced, over all pairs of a set of activity labels like those of real event
+ * logs: mostly 10 to 40 characters, with some over 64 to exercise the multi-block
+ * path, and each with a few distorted variants. Before measuring, the bit-parallel
+ * distances (full, compiled and thresholded) are checked against the reference DP
+ * for every pair.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LevenshteinBenchmark {
+
+    private static final String[] ACTIVITIES = {
+            "Create Purchase Requisition", "Create Purchase Order Item",
+            "Change Price", "Change Quantity", "Record Goods Receipt",
+            "Record Invoice Receipt", "Vendor creates invoice", "Clear Invoice",
+            "Remove Payment Block", "Cancel Goods Receipt", "Delete Purchase Order Item",
+            "Register", "Analyze Defect", "Inform User", "Repair (Simple)",
+            "Repair (Complex)", "Test Repair", "Restart Repair", "Archive Repair",
+            "Submit application", "Check completeness of application documents",
+            "Request missing documents from applicant", "Assess creditworthiness",
+            "Approve loan offer", "Send loan offer to customer", "Decline application",
+            "ER Registration", "ER Triage", "ER Sepsis Triage", "IV Antibiotics",
+            "IV Liquid", "Admission NC", "Admission IC", "Release A", "Return ER",
+            "Leucocytes", "CRP", "LacticAcid",
+            "Notify the customer that the order has shipped and provide tracking details",
+            "Escalate the unresolved complaint to the second level support team for review"
+    };
+
+    @Param({ "5" })
+    public int variantsPerLabel;
+
+    private List<String> _labels;
+    private List<BitParallelLevenshtein.Pattern> _patterns;
+    private int _threshold;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _labels = labels(variantsPerLabel, new Random(42));
+        _patterns = new ArrayList<>(_labels.size());
+        for (String label : _labels) {
+            _patterns.add(BitParallelLevenshtein.compile(label, true));
+        }
+        _threshold = 5;
+        checkEquivalence(_labels);
+    }
+
+
+    @Benchmark
+    public long dynamicProgramming() {
+        long sum = 0;
+        for (int i = 0; i < _labels.size(); i++) {
+            String a = _labels.get(i).toLowerCase();
+            for (int j = i + 1; j < _labels.size(); j++) {
+                sum += referenceDistance(a, _labels.get(j).toLowerCase());
+            }
+        }
+        return sum;
+    }
+
+
+    @Benchmark
+    public long bitParallel() {
+        long sum = 0;
+        for (int i = 0; i < _labels.size(); i++) {
+            String a = _labels.get(i).toLowerCase();
+            for (int j = i + 1; j < _labels.size(); j++) {
+                sum += BitParallelLevenshtein.distance(a, _labels.get(j).toLowerCase());
+            }
+        }
+        return sum;
+    }
+
+
+    @Benchmark
+    public long bitParallelCompiled() {
+        long sum = 0;
+        for (int i = 0; i < _patterns.size(); i++) {
+            BitParallelLevenshtein.Pattern pattern = _patterns.get(i);
+            for (int j = i + 1; j < _patterns.size(); j++) {
+                sum += pattern.distance(_patterns.get(j));
+            }
+        }
+        return sum;
+    }
+
+
+    @Benchmark
+    public long bitParallelThreshold() {
+        long sum = 0;
+        for (int i = 0; i < _patterns.size(); i++) {
+            BitParallelLevenshtein.Pattern pattern = _patterns.get(i);
+            for (int j = i + 1; j < _patterns.size(); j++) {
+                sum += pattern.distance(_patterns.get(j), _threshold);
+            }
+        }
+        return sum;
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LevenshteinBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+
+    // the activities, each followed by distorted variants: characters inserted,
+    // deleted, substituted or changed in case
+    static List<String> labels(int variantsPerLabel, Random random) {
+        List<String> labels = new ArrayList<>();
+        for (String activity : ACTIVITIES) {
+            labels.add(activity);
+            for (int v = 0; v < variantsPerLabel; v++) {
+                StringBuilder sb = new StringBuilder(activity);
+                int edits = 1 + random.nextInt(4);
+                for (int e = 0; e < edits && sb.length() > 0; e++) {
+                    int pos = random.nextInt(sb.length());
+                    char c = (char) ('a' + random.nextInt(26));
+                    switch (random.nextInt(4)) {
+                        case 0: sb.insert(pos, c); break;
+                        case 1: sb.deleteCharAt(pos); break;
+                        case 2: sb.setCharAt(pos, c); break;
+                        default: sb.setCharAt(pos, Character.toUpperCase(sb.charAt(pos)));
+                    }
+                }
+                labels.add(sb.toString());
+            }
+        }
+        return labels;
+    }
+
+
+    // compares every variant of the bit-parallel distance with the reference DP, for
+    // every ordered pair of labels and a range of thresholds
+    static void checkEquivalence(List<String> labels) {
+        for (String a : labels) {
+            BitParallelLevenshtein.Pattern exact = BitParallelLevenshtein.compile(a, false);
+            BitParallelLevenshtein.Pattern folded = BitParallelLevenshtein.compile(a, true);
+            for (String b : labels) {
+                int expected = referenceDistance(a, b);
+                int expectedFolded = referenceDistance(a.toLowerCase(), b.toLowerCase());
+                check(BitParallelLevenshtein.distance(a, b), expected, a, b, "distance");
+                check(exact.distance(b, Integer.MAX_VALUE), expected, a, b, "pattern");
+                check(folded.distance(BitParallelLevenshtein.compile(b, true)),
+                        expectedFolded, a, b, "case-folded pattern");
+                for (int threshold = 0; threshold <= 12; threshold++) {
+                    int expectedWithin = expected <= threshold ? expected : -1;
+                    check(BitParallelLevenshtein.distance(a, b, threshold), expectedWithin,
+                            a, b, "threshold " + threshold);
+                    check(exact.distance(b, threshold), expectedWithin, a, b,
+                            "pattern threshold " + threshold);
+                }
+            }
+        }
+    }
+
+
+    private static void check(int actual, int expected, String a, String b, String variant) {
+        if (actual != expected) {
+            throw new IllegalStateException(String.format(
+                    "%s: distance between '%s' and '%s' is %d, expected %d",
+                    variant, a, b, actual, expected));
+        }
+    }
+
+
+    // the row-by-row DP that EditDistanceRecursive.distance used, without its case
+    // folding
+    static int referenceDistance(String a, String b) {
+        int[] costs = new int[b.length() + 1];
+        for (int j = 0; j < costs.length; j++) {
+            costs[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            costs[0] = i;
+            int nw = i - 1;
+            for (int j = 1; j <= b.length(); j++) {
+                int cj = Math.min(1 + Math.min(costs[j], costs[j - 1]),
+                        a.charAt(i - 1) == b.charAt(j - 1) ? nw : nw + 1);
+                nw = costs[j];
+                costs[j] = cj;
+            }
+        }
+        return costs[b.length()];
+    }
+
+}
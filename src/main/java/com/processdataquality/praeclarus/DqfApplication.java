@@ -16,19 +16,23 @@
 
 package com.processdataquality.praeclarus;
 
+import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 @SpringBootApplication
+@Push           // workflows run in the background and push progress to the browser
 @EnableJpaRepositories(basePackages = {
         "com.processdataquality.praeclarus.logging.repository",
         "com.processdataquality.praeclarus.repo.graph",
         "com.processdataquality.praeclarus.repo.user",
         "com.processdataquality.praeclarus.ui.repo"
 })
-public class DqfApplication extends SpringBootServletInitializer {
+public class DqfApplication extends SpringBootServletInitializer
+        implements AppShellConfigurator {
 
     public static void main(String[] args) {
 // These lines are required to enable ssl (and so https)
@@ -23,8 +23,10 @@ import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import com.processdataquality.praeclarus.exception.InvalidOptionValueException;
@@ -34,10 +36,14 @@ import com.processdataquality.praeclarus.option.ListOption;
 import com.processdataquality.praeclarus.option.TableNameListOption;
 import com.processdataquality.praeclarus.plugin.AbstractPlugin;
 
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import tech.tablesaw.api.DateColumn;
 import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.InstantColumn;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.api.TimeColumn;
 import tech.tablesaw.columns.Column;
 
 /**
@@ -46,6 +52,10 @@ import tech.tablesaw.columns.Column;
  */
 public abstract class AbstractAction extends AbstractPlugin {
 
+	protected static final long NO_TIME = Long.MIN_VALUE;
+	protected static final long NANOS_PER_SECOND = 1_000_000_000L;
+	private static final long SECONDS_PER_DAY = 86_400L;
+
 	protected AbstractAction() {
 		super();
 	}
@@ -365,4 +375,83 @@ public abstract class AbstractAction extends AbstractPlugin {
 		return table;
 	}
 
+	/**
+	 * Reads a column's values as int codes, equal values (compared as strings) having
+	 * equal codes
+	 * @param column the column to read
+	 * @param values receives the value of each code, in code order
+	 * @return the code of each row's value
+	 */
+	protected int[] toCodes(Column<?> column, List<String> values) {
+		int[] codes = new int[column.size()];
+		Object2IntOpenHashMap<String> index = new Object2IntOpenHashMap<>();
+		index.defaultReturnValue(-1);
+		for (int row = 0; row < codes.length; row++) {
+			String value = String.valueOf(column.get(row));
+			int code = index.getInt(value);
+			if (code == -1) {
+				code = index.size();
+				index.put(value, code);
+				values.add(value);
+			}
+			codes[row] = code;
+		}
+		return codes;
+	}
+
+	/**
+	 * Reads a time column's values as comparable nanoseconds since the epoch, read
+	 * as for objectToTime(), so that dates are taken at midnight, times on the epoch
+	 * date and local date-times as UTC. Text is parsed once per distinct value
+	 * @param column the column to read
+	 * @return each row's time, or NO_TIME where it is missing or unreadable
+	 */
+	protected long[] toTimeKeys(Column<?> column) {
+		long[] keys = new long[column.size()];
+		if (column instanceof DateTimeColumn) {
+			DateTimeColumn times = (DateTimeColumn) column;
+			for (int row = 0; row < keys.length; row++) {
+				keys[row] = toTimeKey(times.get(row));
+			}
+		} else if (column instanceof DateColumn) {
+			DateColumn dates = (DateColumn) column;
+			for (int row = 0; row < keys.length; row++) {
+				LocalDate date = dates.get(row);
+				keys[row] = date != null ? toTimeKey(date.toEpochDay() * SECONDS_PER_DAY, 0) : NO_TIME;
+			}
+		} else if (column instanceof TimeColumn) {
+			TimeColumn times = (TimeColumn) column;
+			for (int row = 0; row < keys.length; row++) {
+				LocalTime time = times.get(row);
+				keys[row] = time != null ? time.toNanoOfDay() : NO_TIME;
+			}
+		} else if (column instanceof InstantColumn) {
+			InstantColumn instants = (InstantColumn) column;
+			for (int row = 0; row < keys.length; row++) {
+				Instant instant = instants.get(row);
+				keys[row] = instant != null ? toTimeKey(instant.getEpochSecond(), instant.getNano()) : NO_TIME;
+			}
+		} else {
+			Map<String, Long> parsed = new HashMap<>();
+			for (int row = 0; row < keys.length; row++) {
+				keys[row] = parsed.computeIfAbsent(column.getString(row), text -> toTimeKey(textToTime(text)));
+			}
+		}
+		return keys;
+	}
+
+	private long toTimeKey(LocalDateTime dt) {
+		return dt != null ? toTimeKey(dt.toEpochSecond(ZoneOffset.UTC), dt.getNano()) : NO_TIME;
+	}
+
+	// nanoseconds since the epoch, clamped to the range of a long (1677 to 2262),
+	// short of NO_TIME
+	private long toTimeKey(long epochSecond, int nano) {
+		try {
+			return Math.addExact(Math.multiplyExact(epochSecond, NANOS_PER_SECOND), nano);
+		} catch (ArithmeticException e) {
+			return epochSecond < 0 ? NO_TIME + 1 : Long.MAX_VALUE;
+		}
+	}
+
 }
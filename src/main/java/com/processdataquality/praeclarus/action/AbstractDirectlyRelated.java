@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.action;
+
+import com.processdataquality.praeclarus.exception.InvalidOptionValueException;
+import com.processdataquality.praeclarus.option.ColumnNameListOption;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A base class for the actions that pair each event of a log with the event that
+ * directly follows or precedes it in the same case.
+ *
+ * The rows are sorted once by case and then timestamp, so that each case is a run
+ * of rows in time order, and rows sharing a timestamp form a group within it. An
+ * event's successor is then the first row of the next group in its case, and its
+ * predecessor the first row of the previous group, found in one pass over each
+ * case (in parallel across cases for large logs). Rows without a timestamp are
+ * not paired. The result holds the paired rows in their original order, copied
+ * column by column, with the related row's columns alongside under a prefix.
+ */
+public abstract class AbstractDirectlyRelated extends AbstractAction {
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    protected AbstractDirectlyRelated() {
+        super();
+        getOptions().addDefault(new ColumnNameListOption("CaseId Column"));
+        getOptions().addDefault(new ColumnNameListOption("Timestamp Column"));
+    }
+
+
+    /**
+     * @return true to pair each event with its successor, false with its predecessor
+     */
+    protected abstract boolean pairsWithSuccessor();
+
+    /**
+     * @return the prefix of the names of the related event's columns
+     */
+    protected abstract String getColumnPrefix();
+
+
+    @Override
+    public Table run(List<Table> inputList) throws InvalidOptionValueException {
+        if (inputList.size() != 1) {
+            throw new IllegalArgumentException("This action requires one table as input.");
+        }
+        String caseidColName = getSelectedColumnNameValue("CaseId Column");
+        String timeColName = getSelectedColumnNameValue("Timestamp Column");
+        Table t1 = inputList.remove(0);
+
+        int[] related = relate(toCodes(t1.column(caseidColName), new ArrayList<>()),
+                toTimeKeys(t1.column(timeColName)));
+
+        int pairs = 0;
+        for (int row : related) {
+            if (row >= 0) pairs++;
+        }
+        int[] rows = new int[pairs];
+        int[] relatedRows = new int[pairs];
+        for (int row = 0, i = 0; row < related.length; row++) {
+            if (related[row] >= 0) {
+                rows[i] = row;
+                relatedRows[i++] = related[row];
+            }
+        }
+
+        Table res = Table.create("Result");
+        for (Column<?> column : t1.columns()) {
+            res.addColumns(column.subset(rows).setName(column.name()));
+        }
+        for (Column<?> column : t1.columns()) {
+            res.addColumns(column.subset(relatedRows).setName(getColumnPrefix() + column.name()));
+        }
+        return res;
+    }
+
+
+    @Override
+    public int getMaxInputs() {
+        return 1;
+    }
+
+
+    // the row each row is paired with, or -1 if none
+    private int[] relate(int[] cases, long[] times) {
+        int size = cases.length;
+        int[] related = new int[size];
+        Arrays.fill(related, -1);
+
+        int[] order = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (times[row] != NO_TIME) order[count++] = row;
+        }
+
+        // ties within a case keep table order, so a group starts with its earliest row
+        IntArrays.parallelQuickSort(order, 0, count, (a, b) -> {
+            int c = Integer.compare(cases[a], cases[b]);
+            if (c == 0) c = Long.compare(times[a], times[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+
+        IntArrayList caseStarts = new IntArrayList();
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || cases[order[i]] != cases[order[i - 1]]) caseStarts.add(i);
+        }
+        caseStarts.add(count);
+
+        boolean successor = pairsWithSuccessor();
+        IntStream partitions = IntStream.range(0, caseStarts.size() - 1);
+        if (count >= PARALLEL_THRESHOLD) partitions = partitions.parallel();
+        partitions.forEach(p -> relateCase(order, caseStarts.getInt(p), caseStarts.getInt(p + 1),
+                times, related, successor));
+        return related;
+    }
+
+
+    // pairs the rows of one case, at positions start..end-1 of the sorted order
+    private void relateCase(int[] order, int start, int end, long[] times, int[] related,
+                            boolean successor) {
+        int previousGroup = -1;
+        int group = start;
+        while (group < end) {
+            int next = group + 1;
+            while (next < end && times[order[next]] == times[order[group]]) next++;
+            int partner = -1;
+            if (successor) {
+                if (next < end) partner = order[next];
+            }
+            else if (previousGroup >= 0) {
+                partner = order[previousGroup];
+            }
+            for (int i = group; i < next; i++) {
+                related[order[i]] = partner;
+            }
+            previousGroup = group;
+            group = next;
+        }
+    }
+
+}
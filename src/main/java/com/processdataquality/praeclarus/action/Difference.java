@@ -55,7 +55,6 @@ public class Difference extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 
 		if (inputList.size() != 2) {
 			throw new InvalidOptionValueException("This action requires exactly two tables as input");
@@ -118,9 +117,6 @@ public class Difference extends AbstractAction {
 
 
 		
-		long stopTime = System.currentTimeMillis();
-		long elapsedTime = stopTime - startTime;
-		System.out.println("Execution time for Difference: " + elapsedTime);
 
 		return res;
 
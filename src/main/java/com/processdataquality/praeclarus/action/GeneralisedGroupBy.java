@@ -25,7 +25,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
@@ -77,7 +79,6 @@ public class GeneralisedGroupBy extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 
 		if (inputList.size() != 1) {
 			throw new IllegalArgumentException("This action requires one table as input");
@@ -134,7 +135,8 @@ public class GeneralisedGroupBy extends AbstractAction {
 			newRows = new Object[matchingRows.size()][t1.columnCount()];
 		}
 
-		for (ArrayList<Integer> match : matchingRows) {
+		for (int m = 0; m < matchingRows.size(); m++) {
+			ArrayList<Integer> match = matchingRows.get(m);
 
 			Object[] newRow;
 			if (numberOfColumnsToTranspose >= 1) {
@@ -202,7 +204,7 @@ public class GeneralisedGroupBy extends AbstractAction {
 					}
 				}
 			}
-			newRows[matchingRows.indexOf(match)] = newRow;
+			newRows[m] = newRow;
 		}
 		
 		
@@ -239,9 +241,6 @@ public class GeneralisedGroupBy extends AbstractAction {
 		} else {
 			result = t2;
 		}
-		long stopTime = System.currentTimeMillis();
-		long elapsedTime = stopTime - startTime;
-		System.out.println("Execution time for Group-by: " + elapsedTime);
 
 		return result;
 
@@ -434,49 +433,24 @@ public class GeneralisedGroupBy extends AbstractAction {
 	private ArrayList<ArrayList<Integer>> findMatchingRows(Table inputTable, List<String> values, String mainColName,
 			String caseidColName, String timeColName, int timeInterval, int maxGroupSize) {
 
-		ArrayList<ArrayList<Integer>> foundRows = new ArrayList<ArrayList<Integer>>();
-		String mainColType = inputTable.column(mainColName).type().name();
-		String caseColType = inputTable.column(caseidColName).type().name();
-		String timeColType = inputTable.column(timeColName).type().name();
-
-		Table table = inputTable.copy();
-		boolean[] visited = new boolean[table.rowCount()];
-		for (int i = 0; i < table.rowCount(); i++) {
-			if (visited[i])
-				continue;
-			visited[i] = true;
-			String val = readObject(table, i, mainColName, mainColType).toString();
-			if (values.contains(val)) {
-				String cid = readObject(table, i, caseidColName, caseColType).toString();
-				ArrayList<LocalDateTime> allTimes = new ArrayList<LocalDateTime>();
-				LocalDateTime time = objectToTime(readObject(table, i, timeColName, timeColType));
-				allTimes.add(time);
-				ArrayList<Integer> temp = new ArrayList<>();
-				temp.add(i);
+		int[] cases = toCodes(inputTable.column(caseidColName), new ArrayList<String>());
+		List<String> mainValues = new ArrayList<String>();
+		int[] mainCodes = toCodes(inputTable.column(mainColName), mainValues);
+		Set<String> targetValues = new HashSet<String>(values);
+		boolean[] targets = new boolean[mainValues.size()];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = targetValues.contains(mainValues.get(i));
+		}
+		long[] times = toTimeKeys(inputTable.column(timeColName));
 
-				for (int j = i + 1; j < table.rowCount(); j++) {
-					String nextCid = readObject(table, j, caseidColName, caseColType).toString();
-					if (!cid.equals(nextCid)) {
-						break;
-					}
-					String nextVal = readObject(table, j, mainColName, mainColType).toString();
-					if (values.contains(nextVal)) {
-						allTimes.add(objectToTime(readObject(table, j, timeColName, timeColType)));
-						if (isWithinTimeInterval(allTimes, timeInterval)) {
-							temp.add(j);
-							visited[j] = true;
-							if(temp.size()>maxGroupSize) {
-								break;
-							}
-						} else {
-							allTimes.remove(allTimes.size() - 1);
-						}
-					}
-				}
-				if (temp.size() > 1) {
-					foundRows.add(temp);
-				}
+		ArrayList<ArrayList<Integer>> foundRows = new ArrayList<ArrayList<Integer>>();
+		for (int[] group : WindowedGrouping.findGroups(cases, mainCodes, targets, times, NO_TIME,
+				timeInterval * NANOS_PER_SECOND, maxGroupSize)) {
+			ArrayList<Integer> match = new ArrayList<Integer>(group.length);
+			for (int row : group) {
+				match.add(row);
 			}
+			foundRows.add(match);
 		}
 		return foundRows;
 	}
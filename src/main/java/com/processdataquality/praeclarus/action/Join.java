@@ -49,7 +49,6 @@ public class Join extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 		
 		if (inputList.size() < 2) {
 			throw new InvalidOptionValueException("This action requires at least two tables as input.");
@@ -76,9 +75,6 @@ public class Join extends AbstractAction {
 			result = t2.joinOn(colName).inner(true, inputList.toArray(new Table[] {}));
 		}
 		
-		long stopTime = System.currentTimeMillis();
-	    long elapsedTime = stopTime - startTime;
-	    System.out.println("Execution time for " + JoinType + ": " + elapsedTime);
 		
 		return result;
 	}
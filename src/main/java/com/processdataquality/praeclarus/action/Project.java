@@ -59,7 +59,6 @@ public class Project extends AbstractAction {
 
     @Override
     public Table run(List<Table> inputList) throws InvalidOptionValueException {
-    	long startTime = System.currentTimeMillis();
         if (inputList.size() != 1) {
             throw new IllegalArgumentException("This action requires one table as input.");
         }
@@ -87,9 +86,6 @@ public class Project extends AbstractAction {
         }
 
 
-        long stopTime = System.currentTimeMillis();
-	    long elapsedTime = stopTime - startTime;
-	    System.out.println("Execution time for Project: " + elapsedTime);
 	    
         return t2;
         
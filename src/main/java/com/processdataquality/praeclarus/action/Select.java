@@ -52,7 +52,6 @@ public class Select extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 		if (inputList.size() != 1) {
 			throw new IllegalArgumentException("This action requires one table as input.");
 		}
@@ -93,9 +92,6 @@ public class Select extends AbstractAction {
 		Selection isSelected= Selection.with(rowIndices);
 		Table t2 = t1.where(isSelected);	
 		
-		long stopTime = System.currentTimeMillis();
-	    long elapsedTime = stopTime - startTime;
-	    System.out.println("Execution time for Select: " + elapsedTime);
 		
 		return t2;
 
@@ -64,7 +64,6 @@ public class Transform extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 		if (inputList.size() != 1) {
 			throw new IllegalArgumentException("This action requires one table as input.");
 		}
@@ -136,9 +135,6 @@ public class Transform extends AbstractAction {
 			result =  t2.addColumns(destCol);
 		}
 		
-		long stopTime = System.currentTimeMillis();
-	    long elapsedTime = stopTime - startTime;
-	    System.out.println("Execution time for Transform: " + elapsedTime);
 		
 		return result;
 	}
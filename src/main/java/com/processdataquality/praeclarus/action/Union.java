@@ -43,7 +43,6 @@ public class Union extends AbstractAction {
 
 	@Override
 	public Table run(List<Table> inputList) throws InvalidOptionValueException {
-		long startTime = System.currentTimeMillis();
 		if (inputList.size() < 2) {
 			throw new InvalidOptionValueException("This action requires at least two tables as input.");
 		}
@@ -79,9 +78,6 @@ public class Union extends AbstractAction {
 		}
 
 		
-		long stopTime = System.currentTimeMillis();
-	    long elapsedTime = stopTime - startTime;
-	    System.out.println("Execution time for Union: " + elapsedTime);
 		
 		return t1;
 
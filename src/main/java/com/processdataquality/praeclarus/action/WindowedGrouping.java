@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.action;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Groups the rows of a log that have one of a set of target values and occur close
+ * together in time within a case. Works on primitive arrays indexed by row: case
+ * and value codes, and times as epoch nanoseconds.
+ *
+ * As in a scan of the table, a case is a run of adjacent rows with the same case
+ * code, so rows of a case that are split by other cases fall in separate runs, and
+ * groups are formed in table order: a group starts at the first ungrouped target
+ * row of a run and takes each later ungrouped target row of the run that keeps its
+ * time span under the window, up to a maximum group size. When a run's target rows
+ * are already in time order, as they are in most logs, this is done with a
+ * two-pointer sliding window; otherwise each group scans the rest of its run,
+ * keeping the span as a running minimum and maximum. Runs are grouped in parallel
+ * for large logs.
+ */
+public final class WindowedGrouping {
+
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private WindowedGrouping() { }
+
+
+    /**
+     * Finds the groups of target rows
+     * @param cases each row's case code
+     * @param values each row's value code
+     * @param targets whether each value code is a target
+     * @param times each row's time, or noTime if it has none; rows without a time
+     *              are not grouped
+     * @param noTime the value marking a missing time
+     * @param window the time span of a group: its rows are less than this apart
+     * @param maxGroupSize the most rows a group may have
+     * @return the groups of two or more rows, each in ascending row order, in the
+     * order of their first rows
+     */
+    public static List<int[]> findGroups(int[] cases, int[] values, boolean[] targets, long[] times,
+                                         long noTime, long window, int maxGroupSize) {
+        int size = cases.length;
+
+        // the target rows with a time, and where each run of a case starts among them
+        int[] rows = new int[size];
+        IntArrayList runStarts = new IntArrayList();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (row == 0 || cases[row] != cases[row - 1]) runStarts.add(count);
+            if (targets[values[row]] && times[row] != noTime) rows[count++] = row;
+        }
+        runStarts.add(count);
+
+        IntStream runs = IntStream.range(0, runStarts.size() - 1);
+        if (count >= PARALLEL_THRESHOLD) runs = runs.parallel();
+        return runs.mapToObj(r -> groupRun(rows, runStarts.getInt(r), runStarts.getInt(r + 1),
+                        times, window, maxGroupSize))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+
+    // groups the rows of one run, at positions start..end-1 of 'rows'
+    private static List<int[]> groupRun(int[] rows, int start, int end, long[] times,
+                                        long window, int maxGroupSize) {
+        if (end - start < 2) return Collections.emptyList();
+        return isTimeOrdered(rows, start, end, times) ?
+                groupOrdered(rows, start, end, times, window, maxGroupSize) :
+                groupUnordered(rows, start, end, times, window, maxGroupSize);
+    }
+
+
+    // rows in time order: each group is the rows from its first up to the first
+    // that is a window or more after it
+    private static List<int[]> groupOrdered(int[] rows, int start, int end, long[] times,
+                                            long window, int maxGroupSize) {
+        List<int[]> groups = new ArrayList<>();
+        int first = start;
+        while (first < end) {
+            int last = first + 1;
+            while (last < end && last - first < maxGroupSize
+                    && within(times[rows[first]], times[rows[last]], window)) {
+                last++;
+            }
+            if (last - first > 1) {
+                groups.add(Arrays.copyOfRange(rows, first, last));
+            }
+            first = last;
+        }
+        return groups;
+    }
+
+
+    // rows out of time order: each group scans the ungrouped rows after its first,
+    // taking those that keep its span under the window
+    private static List<int[]> groupUnordered(int[] rows, int start, int end, long[] times,
+                                              long window, int maxGroupSize) {
+        List<int[]> groups = new ArrayList<>();
+        boolean[] grouped = new boolean[end - start];
+        IntArrayList group = new IntArrayList();
+        for (int first = start; first < end; first++) {
+            if (grouped[first - start]) continue;
+            long min = times[rows[first]];
+            long max = min;
+            group.clear();
+            group.add(rows[first]);
+            for (int next = first + 1; next < end && group.size() < maxGroupSize; next++) {
+                if (grouped[next - start]) continue;
+                long time = times[rows[next]];
+                long newMin = Math.min(min, time);
+                long newMax = Math.max(max, time);
+                if (within(newMin, newMax, window)) {
+                    min = newMin;
+                    max = newMax;
+                    group.add(rows[next]);
+                    grouped[next - start] = true;
+                }
+            }
+            if (group.size() > 1) {
+                groups.add(group.toIntArray());
+            }
+        }
+        return groups;
+    }
+
+
+    // whether two times, the first no later than the second, are less than the window
+    // apart. The difference is taken as unsigned, as it may be more than a long holds
+    private static boolean within(long earlier, long later, long window) {
+        return Long.compareUnsigned(later - earlier, window) < 0;
+    }
+
+
+    private static boolean isTimeOrdered(int[] rows, int start, int end, long[] times) {
+        for (int i = start + 1; i < end; i++) {
+            if (times[rows[i]] < times[rows[i - 1]]) return false;
+        }
+        return true;
+    }
+
+}
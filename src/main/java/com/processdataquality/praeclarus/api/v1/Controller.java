@@ -19,24 +19,36 @@ package com.processdataquality.praeclarus.api.v1;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.WriterConfig;
+import com.processdataquality.praeclarus.batch.BatchJob;
+import com.processdataquality.praeclarus.batch.BatchRunner;
+import com.processdataquality.praeclarus.batch.RepairPolicy;
+import com.processdataquality.praeclarus.exception.JobNotFoundException;
 import com.processdataquality.praeclarus.exception.WorkflowNotFoundException;
-import com.processdataquality.praeclarus.graph.Graph;
-import com.processdataquality.praeclarus.graph.GraphRunner;
-import com.processdataquality.praeclarus.node.Node;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
 import com.processdataquality.praeclarus.plugin.PluginService;
-import com.processdataquality.praeclarus.repo.graph.GraphStore;
 import com.processdataquality.praeclarus.ui.repo.StoredWorkflow;
 import com.processdataquality.praeclarus.ui.repo.WorkflowStore;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
-import java.util.zip.ZipFile;
+import java.util.Map;
 
 /**
  * @author Michael Adams
@@ -70,26 +82,92 @@ public class Controller {
     }
 
 
-    @PostMapping("/workflows/{id}/run")
-    public String runWorkflow(@RequestBody String logFile, @RequestBody ZipFile zipFile,
-                              @PathVariable String id) {
-         StoredWorkflow workflow = findAuthorisedWorkflow(id);
-        Optional<Graph> optional = GraphStore.get(id);
-        if (optional.isPresent()) {
-            Graph graph = optional.get();
-            graph.refreshOptions();
-            Set<Node> heads = graph.getHeads();
-            heads.forEach(head -> {
-                // if reader: (AbsDataReader.setsource()
-                // setInputs((Table) logfile
-            //    head.getPlugin().getAuxiliaryDatasets().put(unzipped zip file)
-            });
-            GraphRunner runner = new GraphRunner(graph);
-            ///runner.run(heads.iterator().next());
-            // getTails, getoutputs,
+    /**
+     * Starts a headless run of a stored workflow. Each uploaded file part is bound to
+     * the reader node whose id or label matches the part name; any other request
+     * parameter (apart from 'repairPolicy') binds a file in the server's batch sources
+     * directory to the reader node named by the parameter. A single file is bound to a
+     * workflow with a single reader whatever its name.
+     * @return the job summary, including the job id to poll
+     */
+    @PostMapping(value = "/workflows/{id}/run", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<String> runWorkflow(@PathVariable String id,
+                                              @RequestParam Map<String, MultipartFile> files,
+                                              @RequestParam Map<String, String> params)
+            throws IOException {
+        BatchJob job = newJob(id, params);
+        try {
+            for (Map.Entry<String, MultipartFile> entry : files.entrySet()) {
+                MultipartFile file = entry.getValue();
+                job.addSource(entry.getKey(), file.getInputStream(), file.getOriginalFilename());
+            }
         }
-        // return them
-        return "";
+        catch (IOException e) {
+            BatchRunner.discard(job);
+            throw e;
+        }
+        return startJob(job, params);
+    }
+
+
+    /**
+     * Starts a headless run of a stored workflow with a single reader, taking the log
+     * as the request body
+     * @return the job summary, including the job id to poll
+     */
+    @PostMapping(value = "/workflows/{id}/run",
+            consumes = { MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                    MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE })
+    public ResponseEntity<String> runWorkflow(@PathVariable String id,
+                                              @RequestBody byte[] log,
+                                              @RequestParam Map<String, String> params)
+            throws IOException {
+        BatchJob job = newJob(id, params);
+        job.addSource("log", new ByteArrayInputStream(log), null);
+        return startJob(job, params);
+    }
+
+
+    @PutMapping("/workflows/{id}/repairPolicy")
+    public String setRepairPolicy(@PathVariable String id, @RequestBody String policy) {
+        StoredWorkflow workflow = WorkflowStore.findById(id);
+        if (workflow == null || ! workflow.hasOwner(getUserName())) {
+            throw new WorkflowNotFoundException(id);        // only owners may change it
+        }
+        workflow.setRepairPolicy(toRepairPolicy(policy));
+        return WorkflowStore.save(workflow).toSummaryJson().toString(WriterConfig.PRETTY_PRINT);
+    }
+
+
+    @GetMapping("/jobs")
+    public String findAllJobs() {
+        JsonArray array = new JsonArray();
+        BatchRunner.getJobs(getUserName()).forEach(job -> array.add(job.asJson()));
+        return array.toString(WriterConfig.PRETTY_PRINT);
+    }
+
+
+    @GetMapping("/jobs/{jobId}")
+    public String getJob(@PathVariable String jobId) {
+        return findAuthorisedJob(jobId).asJson().toString(WriterConfig.PRETTY_PRINT);
+    }
+
+
+    @GetMapping("/jobs/{jobId}/outputs/{name}")
+    public ResponseEntity<Resource> getJobOutput(@PathVariable String jobId,
+                                                 @PathVariable String name) {
+        BatchJob job = findAuthorisedJob(jobId);
+        File file = job.getStatus() == BatchJob.Status.COMPLETED ? job.getOutput(name) : null;
+        if (file == null || ! file.exists()) {
+            return ResponseEntity.notFound().build();
+        }
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(name, StandardCharsets.UTF_8).build();      // quoted and encoded
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(file.length())
+                .body(new FileSystemResource(file));
     }
 
 
@@ -129,6 +207,55 @@ public class Controller {
 
     
 
+    private BatchJob newJob(String workflowID, Map<String, String> params) throws IOException {
+        StoredWorkflow workflow = findAuthorisedWorkflow(workflowID);
+        String policy = params.get("repairPolicy");
+        RepairPolicy repairPolicy = policy != null ?
+                toRepairPolicy(policy) : workflow.getRepairPolicy();
+        return BatchRunner.newJob(workflow, getUserName(), repairPolicy);
+    }
+
+
+    // an unknown policy is the client's error, so a 400 rather than a 500
+    private RepairPolicy toRepairPolicy(String policy) {
+        try {
+            return RepairPolicy.valueOf(policy.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unknown repair policy: " + policy.trim() + ", expected one of " +
+                            Arrays.toString(RepairPolicy.values()));
+        }
+    }
+
+
+    private ResponseEntity<String> startJob(BatchJob job, Map<String, String> params)
+            throws IOException {
+        try {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (! entry.getKey().equals("repairPolicy")) {
+                    job.addSource(entry.getKey(), BatchRunner.resolveServerSource(entry.getValue()));
+                }
+            }
+        }
+        catch (IOException e) {
+            BatchRunner.discard(job);
+            throw e;
+        }
+        BatchRunner.start(job);
+        return ResponseEntity.accepted().body(job.asJson().toString(WriterConfig.PRETTY_PRINT));
+    }
+
+
+    private BatchJob findAuthorisedJob(String jobId) {
+        BatchJob job = BatchRunner.getJob(jobId);
+        if (job != null && job.hasOwner(getUserName())) {
+            return job;
+        }
+        throw new JobNotFoundException(jobId);
+    }
+
+
     private String getUserName() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (!(authentication instanceof AnonymousAuthenticationToken)) {
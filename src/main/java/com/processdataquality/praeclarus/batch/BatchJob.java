@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.batch;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.processdataquality.praeclarus.graph.GraphRunnerEvent;
+import com.processdataquality.praeclarus.node.Node;
+import com.processdataquality.praeclarus.node.PatternNode;
+import com.processdataquality.praeclarus.ui.repo.StoredWorkflow;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * A single headless run of a stored workflow, holding the source files bound to its
+ * reader nodes, the files written by its writer nodes, and its progress
+ */
+public class BatchJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final StoredWorkflow workflow;
+    private final String owner;
+    private final RepairPolicy repairPolicy;
+    private final File directory;
+    private final Instant created = Instant.now();
+
+    // keyed by reader node id or label
+    private final Map<String, File> sources = new LinkedHashMap<>();
+
+    // keyed by output file name
+    private final Map<String, File> outputs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant started;
+    private volatile Instant finished;
+    private volatile String message;
+
+
+    BatchJob(StoredWorkflow workflow, String owner, RepairPolicy policy, File parentDir)
+            throws IOException {
+        this.workflow = workflow;
+        this.owner = owner;
+        this.repairPolicy = policy;
+        this.directory = new File(parentDir, id);
+        if (! directory.mkdirs()) {
+            throw new IOException("Failed to create directory for job " + id);
+        }
+    }
+
+
+    public String getId() { return id; }
+
+    public StoredWorkflow getWorkflow() { return workflow; }
+
+    public String getOwner() { return owner; }
+
+    public boolean hasOwner(String user) { return owner.equals(user); }
+
+    public RepairPolicy getRepairPolicy() { return repairPolicy; }
+
+    public Status getStatus() { return status; }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public Instant getFinished() { return finished; }
+
+    public File getDirectory() { return directory; }
+
+
+    /**
+     * Stores an uploaded log file for binding to a reader node
+     * @param key the id or label of the reader node
+     * @param content the log file content
+     * @param fileName the name of the uploaded file (may be null)
+     * @throws IOException if the content can't be stored
+     */
+    public void addSource(String key, InputStream content, String fileName)
+            throws IOException {
+        String name = "in-" + sources.size();
+        if (fileName != null) {
+            name += "-" + FilenameUtils.getName(fileName);    // strip any path
+        }
+        File file = new File(directory, name);
+        Files.copy(content, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        sources.put(key, file);
+    }
+
+
+    /**
+     * Binds a log file that already exists on the server to a reader node
+     * @param key the id or label of the reader node
+     * @param file the log file
+     */
+    public void addSource(String key, File file) {
+        sources.put(key, file);
+    }
+
+
+    /**
+     * Gets the source file bound to a reader node. If the job has a single source and
+     * the workflow a single reader, the two are bound whatever the source's key
+     * @param node the reader node
+     * @param readerCount the number of reader nodes in the workflow
+     * @return the bound file, or null if there's none
+     */
+    File getSource(Node node, int readerCount) {
+        File file = sources.get(node.getID());
+        if (file == null) file = sources.get(node.getLabel());
+        if (file == null && readerCount == 1 && sources.size() == 1) {
+            file = sources.values().iterator().next();
+        }
+        return file;
+    }
+
+
+    void addOutput(String name, File file) { outputs.put(name, file); }
+
+    public File getOutput(String name) { return outputs.get(name); }
+
+
+    void setRunning() {
+        started = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void setCompleted() {
+        finished = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void setFailed(String msg) {
+        message = msg;
+        finished = Instant.now();
+        status = Status.FAILED;
+    }
+
+
+    void addEvent(String event) { events.add(event); }
+
+
+    void nodeEvent(GraphRunnerEvent event) {
+        Node node = event.getNode();
+        switch (event.getEventType()) {
+            case NODE_PAUSED:
+                Integer detected = ((PatternNode) node).getDetected() != null ?
+                        ((PatternNode) node).getDetected().rowCount() : null;
+                addEvent(String.format("%s: detected %s rows in %.3f seconds",
+                        node.getLabel(), detected, node.getStopWatch().getDurationAsSeconds()));
+                break;
+            case NODE_COMPLETED:
+                Integer rows = node.getOutput() != null ? node.getOutput().rowCount() : null;
+                addEvent(String.format("%s: completed with %s rows in %.3f seconds",
+                        node.getLabel(), rows, node.getStopWatch().getLastDurationAsSeconds()));
+                break;
+        }
+    }
+
+
+    public JsonObject asJson() {
+        JsonObject json = new JsonObject();
+        json.add("jobId", id);
+        json.add("workflowId", workflow.getId());
+        json.add("workflowName", workflow.getName());
+        json.add("status", status.name());
+        json.add("repairPolicy", repairPolicy.name());
+        json.add("created", created.toString());
+        if (started != null) json.add("started", started.toString());
+        if (finished != null) json.add("finished", finished.toString());
+        if (message != null) json.add("message", message);
+
+        JsonArray eventArray = new JsonArray();
+        synchronized (events) {
+            events.forEach(eventArray::add);
+        }
+        json.add("events", eventArray);
+
+        JsonArray outputArray = new JsonArray();
+        if (status == Status.COMPLETED) {
+            synchronized (outputs) {
+                outputs.keySet().forEach(outputArray::add);
+            }
+        }
+        json.add("outputs", outputArray);
+        return json;
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.batch;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.processdataquality.praeclarus.annotation.Plugin;
+import com.processdataquality.praeclarus.exception.NodeRunnerException;
+import com.processdataquality.praeclarus.graph.Graph;
+import com.processdataquality.praeclarus.graph.GraphExecutionService;
+import com.processdataquality.praeclarus.graph.GraphRunner;
+import com.processdataquality.praeclarus.node.*;
+import com.processdataquality.praeclarus.pattern.AbstractDataPattern;
+import com.processdataquality.praeclarus.plugin.uitemplate.PluginUI;
+import com.processdataquality.praeclarus.plugin.uitemplate.UITable;
+import com.processdataquality.praeclarus.reader.AbstractDataReader;
+import com.processdataquality.praeclarus.repo.graph.GraphStore;
+import com.processdataquality.praeclarus.ui.repo.StoredWorkflow;
+import com.processdataquality.praeclarus.writer.AbstractDataWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.tablesaw.api.Table;
+
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs stored workflows without a UI. Each run is a BatchJob: its uploaded or
+ * server-side log files are bound to the workflow's reader nodes, its writer nodes
+ * write to files in the job's directory, and each pattern node that pauses for a
+ * repair decision is resumed according to the job's repair policy. Jobs run in the
+ * background and may be polled by id.
+ *
+ * The job table is held in memory only, so jobs (though not their files) are lost
+ * on a restart. Jobs run on the GraphExecutionService pool shared with workflow
+ * runs launched from the UI, so a burst of jobs can delay those runs.
+ */
+public class BatchRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRunner.class);
+
+    private static final File BATCH_DIR = new File("../pdq_batch");
+    private static final File JOBS_DIR = new File(BATCH_DIR, "jobs");
+    private static final File SOURCES_DIR = new File(BATCH_DIR, "sources");
+
+    // finished jobs (and their files) are kept for a day, so they may be collected
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private static final int MAX_CONCURRENCY =
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final Map<String, BatchJob> JOBS = new ConcurrentHashMap<>();
+
+
+    private BatchRunner() { }
+
+
+    /**
+     * Creates a new job for a workflow. Sources should be added to the job before it
+     * is started
+     * @param workflow the stored workflow to run
+     * @param owner the user requesting the run
+     * @param policy how paused pattern nodes are to be resumed
+     * @return the new job
+     * @throws IOException if the job's directory can't be created
+     */
+    public static BatchJob newJob(StoredWorkflow workflow, String owner, RepairPolicy policy)
+            throws IOException {
+        purgeExpiredJobs();
+        BatchJob job = new BatchJob(workflow, owner, policy, JOBS_DIR);
+        JOBS.put(job.getId(), job);
+        return job;
+    }
+
+
+    /**
+     * Resolves the path of a log file stored on the server. Paths are relative to the
+     * batch sources directory, and may not refer to files outside it
+     * @param path the relative path
+     * @return the file
+     * @throws IOException if the path is outside the sources directory or doesn't exist
+     */
+    public static File resolveServerSource(String path) throws IOException {
+        File base = SOURCES_DIR.getCanonicalFile();
+        File file = new File(base, path).getCanonicalFile();
+        if (! file.toPath().startsWith(base.toPath())) {
+            throw new IOException("Source path is outside the batch sources directory: " + path);
+        }
+        if (! file.isFile()) {
+            throw new FileNotFoundException("No source file found at: " + path);
+        }
+        return file;
+    }
+
+
+    /**
+     * Queues a job for background execution
+     * @param job the job to start
+     */
+    public static void start(BatchJob job) {
+        GraphExecutionService.submit(() -> execute(job));
+    }
+
+
+    /**
+     * Removes a job that won't be started, e.g. because its sources couldn't be bound
+     * @param job the job to remove
+     */
+    public static void discard(BatchJob job) {
+        JOBS.remove(job.getId());
+        deleteDirectory(job.getDirectory());
+    }
+
+
+    public static BatchJob getJob(String id) {
+        return JOBS.get(id);
+    }
+
+
+    public static List<BatchJob> getJobs(String owner) {
+        List<BatchJob> jobs = new ArrayList<>();
+        for (BatchJob job : JOBS.values()) {
+            if (job.hasOwner(owner)) jobs.add(job);
+        }
+        return jobs;
+    }
+
+
+    private static void execute(BatchJob job) {
+        job.setRunning();
+        List<OutputStream> streams = new ArrayList<>();
+        GraphRunner runner = null;
+        try {
+            JsonObject json = Json.parse(job.getWorkflow().getWorkflowJson()).asObject();
+            Set<Node> nodes = loadNodes(json);
+            bindReaders(job, nodes);
+            bindWriters(job, nodes, streams);
+
+            runner = new GraphRunner(loadGraph(json, job.getOwner()));
+            runner.setMaxConcurrency(MAX_CONCURRENCY);
+            runner.addNodeRunnerEventListener(job::nodeEvent);
+            runToCompletion(runner, nodes, job);
+            closeAll(streams);
+            job.setCompleted();
+        }
+        catch (Throwable t) {
+            LOG.error("Batch job " + job.getId() + " failed", t);
+            closeAll(streams);
+            String msg = t.getMessage();
+            if (t.getCause() != null && t.getCause().getMessage() != null) {
+                msg += "; Caused by: " + t.getCause().getMessage();
+            }
+            job.setFailed(msg);
+        }
+        finally {
+            if (runner != null) runner.shutdown();
+        }
+    }
+
+
+    // runs every tail to completion, resuming paused pattern nodes as it goes
+    private static void runToCompletion(GraphRunner runner, Set<Node> nodes, BatchJob job)
+            throws NodeRunnerException {
+        int progress = progress(nodes);
+        while (true) {
+            Node paused = findPaused(nodes);
+            if (paused != null) {
+                applyRepairPolicy(paused, job);
+                runner.action(GraphRunner.RunnerAction.RESUME, paused);
+            }
+            else {
+                Node pending = findPending(nodes);
+                if (pending == null) break;                      // all done
+                runner.reset();
+                runner.run(pending);
+            }
+
+            int newProgress = progress(nodes);
+            if (newProgress == progress) {
+                throw new NodeRunnerException("Workflow stalled: no node could be run");
+            }
+            progress = newProgress;
+        }
+    }
+
+
+    private static void applyRepairPolicy(Node node, BatchJob job) throws NodeRunnerException {
+        Table detected = ((PatternNode) node).getDetected();
+        boolean hasDetections = detected != null && ! detected.isEmpty();
+        RepairPolicy policy = job.getRepairPolicy();
+        if (policy == RepairPolicy.FAIL && hasDetections) {
+            throw new NodeRunnerException(String.format(
+                    "'%s' detected %d rows requiring repair, and the repair policy is %s",
+                    node.getLabel(), detected.rowCount(), policy));
+        }
+
+        PluginUI ui = ((AbstractDataPattern) node.getPlugin()).getUI();
+        if (ui != null) {
+            for (UITable uiTable : ui.extractTables()) {
+                Table table = uiTable.getTable();
+                if (table != null) {
+                    uiTable.setSelectedRows(policy == RepairPolicy.REPAIR_ALL ?
+                            table : table.emptyCopy());
+                }
+            }
+        }
+        job.addEvent(String.format("%s: applied repair policy %s", node.getLabel(), policy));
+    }
+
+
+    // a measure of how far the run has progressed, used to detect a stalled run
+    private static int progress(Set<Node> nodes) {
+        int progress = 0;
+        for (Node node : nodes) {
+            if (node.hasCompleted()) progress += 2;
+            else if (node.getState() == NodeState.PAUSED) progress++;
+        }
+        return progress;
+    }
+
+
+    private static Node findPaused(Set<Node> nodes) {
+        for (Node node : nodes) {
+            if (node instanceof PatternNode && node.getState() == NodeState.PAUSED) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+
+    // prefers tails, since running a tail also runs everything it depends on
+    private static Node findPending(Set<Node> nodes) {
+        Node pending = null;
+        for (Node node : nodes) {
+            if (! node.hasCompleted()) {
+                if (node.isTail()) return node;
+                pending = node;
+            }
+        }
+        return pending;
+    }
+
+
+    private static Set<Node> loadNodes(JsonObject json) throws IOException {
+        Map<String, Node> nodeMap = new HashMap<>();
+        NodeLoader nodeLoader = new NodeLoader();
+        JsonArray vertices = json.get("vertices").asArray();
+        for (int i = 0; i < vertices.size(); i++) {
+            JsonObject nodeJson = vertices.get(i).asObject().get("node").asObject();
+            Node node = nodeLoader.fromJson(nodeJson, false);   // always a fresh run
+            if (node == null) {
+                throw new IOException("Failed to load plugin: " +
+                        nodeJson.getString("plugin", "unknown"));
+            }
+            nodeMap.put(node.getID(), node);
+        }
+
+        JsonArray connectors = json.get("connectors").asArray();
+        for (int i = 0; i < connectors.size(); i++) {
+            JsonObject connector = connectors.get(i).asObject();
+            Node source = nodeMap.get(connector.getString("source", "-1"));
+            Node target = nodeMap.get(connector.getString("target", "-1"));
+            if (! (source == null || target == null)) {
+                source.connect(target);
+            }
+        }
+        return new HashSet<>(nodeMap.values());
+    }
+
+
+    private static Graph loadGraph(JsonObject json, String user) {
+        String id = json.getString("id", "-1");
+        Optional<Graph> optional = GraphStore.get(id);
+        return optional.orElseGet(() -> new Graph.Builder(user).id(id)
+                .name(json.getString("name", "")).build());
+    }
+
+
+    private static void bindReaders(BatchJob job, Set<Node> nodes) throws IOException {
+        int readerCount = 0;
+        for (Node node : nodes) {
+            if (node instanceof ReaderNode) readerCount++;
+        }
+        for (Node node : nodes) {
+            if (node instanceof ReaderNode) {
+                File file = job.getSource(node, readerCount);
+                if (file == null) {
+                    throw new IOException("No source file bound to reader '" +
+                            node.getLabel() + "' [" + node.getID() + "]");
+                }
+                ((AbstractDataReader) node.getPlugin()).setSource(file);
+            }
+        }
+    }
+
+
+    private static void bindWriters(BatchJob job, Set<Node> nodes, List<OutputStream> streams)
+            throws IOException {
+        Set<String> names = new HashSet<>();
+        for (Node node : nodes) {
+            if (node instanceof WriterNode) {
+                String name = uniqueName(node.getLabel() + getFileExtension(node), names);
+                File file = new File(job.getDirectory(), "out-" + name);
+                OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+                streams.add(stream);
+                ((AbstractDataWriter) node.getPlugin()).setDestination(stream);
+                job.addOutput(name, file);
+            }
+        }
+    }
+
+
+    // writers declare their file type in their metadata, e.g. "CSV Files;text/csv;.csv"
+    private static String getFileExtension(Node node) {
+        Plugin metaData = node.getPlugin().getClass().getAnnotation(Plugin.class);
+        if (metaData != null) {
+            for (String descriptor : metaData.fileDescriptors().split(";")) {
+                if (descriptor.startsWith(".")) return descriptor;
+            }
+        }
+        return ".out";
+    }
+
+
+    private static String uniqueName(String name, Set<String> names) {
+        String safeName = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        String unique = safeName;
+        for (int i = 2; names.contains(unique); i++) {
+            unique = i + "_" + safeName;
+        }
+        names.add(unique);
+        return unique;
+    }
+
+
+    private static void closeAll(List<OutputStream> streams) {
+        for (OutputStream stream : streams) {
+            try {
+                stream.close();
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to close batch output stream", e);
+            }
+        }
+        streams.clear();
+    }
+
+
+    private static void purgeExpiredJobs() {
+        Instant expiry = Instant.now().minus(RETENTION);
+        JOBS.values().removeIf(job -> {
+            if (job.isFinished() && job.getFinished().isBefore(expiry)) {
+                deleteDirectory(job.getDirectory());
+                return true;
+            }
+            return false;
+        });
+    }
+
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (! file.delete()) LOG.warn("Failed to delete " + file);
+            }
+        }
+        if (! dir.delete()) LOG.warn("Failed to delete " + dir);
+    }
+
+}
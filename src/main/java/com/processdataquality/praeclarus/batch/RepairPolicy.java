@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.batch;
+
+/**
+ * Determines how a pattern node that pauses after detection is resumed when a
+ * workflow is run without a user to make repair selections
+ */
+public enum RepairPolicy {
+
+    REPAIR_ALL,        // select every detected row for repair
+    REPAIR_NONE,       // select nothing, so the node passes its input through
+    FAIL               // abort the run if anything is detected
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.graph;
+
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared, bounded pool of background threads on which workflows are run, so that
+ * the thread of the request that launches a run (e.g. a UI button click) is released
+ * immediately. When more runs are launched than there are threads, the extras are
+ * queued until a thread becomes free.
+ */
+public class GraphExecutionService {
+
+    private static final int POOL_SIZE =
+            Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+
+    private GraphExecutionService() { }
+
+
+    /**
+     * Queues a task for background execution. The security context of the calling
+     * thread is carried over to the task, so that events logged during the run are
+     * attributed to the user who launched it
+     * @param task the task to run
+     * @return a Future that may be used to cancel (and interrupt) the task
+     */
+    public static Future<?> submit(Runnable task) {
+        return EXECUTOR.submit(new DelegatingSecurityContextRunnable(task));
+    }
+
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "graph-execution-" + THREAD_COUNT.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
@@ -19,10 +19,20 @@ package com.processdataquality.praeclarus.graph;
 import com.processdataquality.praeclarus.exception.NodeRunnerException;
 import com.processdataquality.praeclarus.logging.EventLogger;
 import com.processdataquality.praeclarus.logging.EventType;
+import com.processdataquality.praeclarus.metrics.NodeMetricsPublisher;
 import com.processdataquality.praeclarus.node.*;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * @author Michael Adams
@@ -33,12 +43,32 @@ public class GraphRunner implements NodeStateChangeListener {
     public enum RunnerState { RUNNING, STEPPING, IDLE }
     public enum RunnerAction { RUN, STEP, STEP_BACK, RESUME, STOP }
 
-    private RunnerState _runnerState = RunnerState.IDLE;
+    private volatile RunnerState _runnerState = RunnerState.IDLE;
     private Graph _graph;
     private final Set<GraphRunnerEventListener> _eventListeners = new HashSet<>();
     private final Set<GraphRunnerStateChangeListener> _stateListeners = new HashSet<>();
     private Node _stepToNode = null;
 
+    // concurrent scheduling: a max concurrency of 1 runs nodes sequentially on the
+    // caller's thread; anything higher runs each ready node on a bounded worker pool
+    private int _maxConcurrency = 1;
+    private ThreadPoolExecutor _executor;
+    private volatile BlockingQueue<NodeCompletion> _completions = new LinkedBlockingQueue<>();
+    private final Set<Node> _submitted = new HashSet<>();
+    private final Set<Node> _paused = new HashSet<>();
+    private int _activeCount = 0;
+
+    // background execution: nodes currently running, and those whose run was
+    // interrupted by a stop but which may yet complete. Moves between the two sets
+    // are made under the lock of _executing. An abandoned node is reset by the thread
+    // running it once its run returns, and no new action is accepted until then
+    private final Set<Node> _executing = ConcurrentHashMap.newKeySet();
+    private final Set<Node> _abandoned = ConcurrentHashMap.newKeySet();
+    private volatile Execution _execution;
+
+    // the background execution being performed by the current thread, if any
+    private final ThreadLocal<Execution> _currentExecution = new ThreadLocal<>();
+
     public GraphRunner() { }
 
     public GraphRunner(Graph graph) { setGraph(graph); }
@@ -61,8 +91,49 @@ public class GraphRunner implements NodeStateChangeListener {
     }
 
 
+    /**
+     * Sets the maximum number of nodes that may execute at the same time. A value of
+     * 1 (the default) runs the workflow sequentially on the calling thread. Higher
+     * values run each node whose predecessors have all completed on a worker pool,
+     * so that independent branches execute in parallel
+     * @param max the maximum number of concurrently executing nodes
+     */
+    public void setMaxConcurrency(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1");
+        }
+        if (_runnerState != RunnerState.IDLE) {
+            throw new IllegalStateException("Cannot change concurrency while running");
+        }
+        if (max != _maxConcurrency) {
+            _maxConcurrency = max;
+            shutdownExecutor();
+        }
+    }
+
+    public int getMaxConcurrency() { return _maxConcurrency; }
+
+    public boolean isConcurrent() { return _maxConcurrency > 1; }
+
+
+    /**
+     * Releases the worker pool, if one has been created
+     */
+    public void shutdown() {
+        shutdownExecutor();
+    }
+
+
     @Override
     public void nodeStateChanged(Node node) throws Exception {
+        if (isConcurrent()) return;      // workers report completions to the scheduler
+        synchronized (_executing) {
+            if (_abandoned.contains(node)) return;      // reset when its run returns
+            switch (node.getState()) {
+                case COMPLETED:
+                case PAUSED: _executing.remove(node);
+            }
+        }
         switch (node.getState()) {
             case COMPLETED: complete(node); break;
             case PAUSED: announceNodePaused(node); break;
@@ -86,7 +157,17 @@ public class GraphRunner implements NodeStateChangeListener {
 
     private void resume(Node node) throws NodeRunnerException {
         try {
-            node.run();          // pattern node - run() will call part 2 of node's run cmd
+            if (isConcurrent()) {
+                _paused.remove(node);
+                submit(node);
+                awaitQuiescence();
+            }
+            else {
+                runNode(node);       // pattern node - run() will call part 2 of node's run cmd
+            }
+        }
+        catch (NodeRunnerException nre) {
+            throw nre;
         }
         catch (Throwable t) {
             throw new NodeRunnerException(t.getMessage(), t.getCause());
@@ -107,12 +188,125 @@ public class GraphRunner implements NodeStateChangeListener {
 
 
     public void action(RunnerAction runnerAction, Node node) throws NodeRunnerException {
+        if (runnerAction != RunnerAction.STOP) checkNotStopping();
         switch (runnerAction) {
             case RUN : run(node); break;
             case STEP : step(node); break;
             case STEP_BACK : stepBack(node); break;
             case RESUME : resume(node); break;
-            case STOP : reset(); break;
+            case STOP : stop(); break;
+        }
+    }
+
+
+    /**
+     * Performs a runner action on a background thread, so that the caller's thread
+     * is not held for the duration of the run. Listeners are notified on the
+     * background thread, so UI listeners must synchronise their own updates
+     * @param runnerAction the action to perform
+     * @param node the node to perform the action on
+     * @param onSuccess called when the action completes without error
+     * @param onFailure called with the exception if the action fails
+     * @return a Future representing the background run
+     */
+    public Future<?> actionAsync(RunnerAction runnerAction, Node node, Runnable onSuccess,
+                                 Consumer<NodeRunnerException> onFailure) {
+        if (runnerAction == RunnerAction.STOP) {
+            stop();
+            return null;
+        }
+        Execution execution = new Execution();
+        _execution = execution;
+        Future<?> future = GraphExecutionService.submit(() -> {
+            _currentExecution.set(execution);
+            try {
+                action(runnerAction, node);
+                if (! execution.stopped) onSuccess.run();
+            }
+            catch (NodeRunnerException e) {
+                if (! execution.stopped) onFailure.accept(e);
+            }
+            finally {
+                _currentExecution.remove();
+            }
+        });
+        execution.future = future;
+        if (execution.stopped) future.cancel(true);      // stopped before it was set
+        return future;
+    }
+
+
+    /**
+     * Stops the current run. The thread running the current plugin(s) is interrupted
+     * and the runner becomes idle. Each node that was executing is returned to its
+     * unstarted state by its own thread, once its plugin returns; a plugin that
+     * ignores the interrupt will finish in the background, but its output is
+     * discarded, and no new action can be taken until it does
+     */
+    public void stop() {
+        Execution execution = _execution;
+        if (execution != null) {
+            execution.stopped = true;
+            if (execution.future != null) execution.future.cancel(true);
+            _execution = null;
+        }
+        if (_executor != null) {
+            _executor.shutdownNow();                  // interrupts running workers
+            _executor = null;
+        }
+        _completions = new LinkedBlockingQueue<>();   // orphan any late completions
+        _activeCount = 0;
+        synchronized (_executing) {
+            _runnerState = RunnerState.IDLE;          // nodes not yet executing won't start
+            _abandoned.addAll(_executing);
+            _executing.clear();
+        }
+        reset();
+    }
+
+
+    // called by the thread that ran a node when the run returns: if the node was
+    // abandoned by a stop, returns it to its unstarted state
+    private void finishRun(Node node) {
+        synchronized (_executing) {
+            _executing.remove(node);
+            if (! _abandoned.contains(node)) return;
+        }
+        try {
+            node.reset();
+        }
+        catch (Exception e) {
+            // the node has been stopped anyway
+        }
+        _abandoned.remove(node);
+    }
+
+
+    // whether the run being performed on this thread has been stopped, in which case
+    // it must start no more nodes. Checked under the lock of _executing before a node
+    // is added to it, so that a node either starts before a stop (and is abandoned by
+    // it) or not at all
+    private boolean isStopped() {
+        Execution execution = _currentExecution.get();
+        return (execution != null && execution.stopped) ||
+                Thread.currentThread().isInterrupted() || _runnerState == RunnerState.IDLE;
+    }
+
+
+    // adds a node about to run to those executing, unless the run has been stopped
+    private boolean markExecuting(Node node) {
+        synchronized (_executing) {
+            if (isStopped()) return false;
+            _executing.add(node);
+            return true;
+        }
+    }
+
+
+    // a new action would race the plugins of a stopped run that have yet to return
+    private void checkNotStopping() throws NodeRunnerException {
+        if (! _abandoned.isEmpty()) {
+            throw new NodeRunnerException("The stopped run is still finishing, please try again shortly");
         }
     }
 
@@ -120,6 +314,8 @@ public class GraphRunner implements NodeStateChangeListener {
     public void reset() {
         setState(RunnerState.IDLE);
         _stepToNode = null;
+        _submitted.clear();
+        _paused.clear();
     }
 
 
@@ -130,12 +326,18 @@ public class GraphRunner implements NodeStateChangeListener {
         if (node == null) {
             throw new NodeRunnerException("No node selected to run");
         }
+        checkNotStopping();
 
         if (_runnerState == RunnerState.IDLE) {
             setState(launchState);
         }
         else throw new NodeRunnerException("Workflow is already running");
 
+        if (isConcurrent()) {
+            launchConcurrent(node);
+            return;
+        }
+
         try {
             // check all previous have completed
             if (node.hasCompleted()) {
@@ -179,9 +381,27 @@ public class GraphRunner implements NodeStateChangeListener {
 
 
     private void start(Node node) throws Exception {
+        if (isStopped()) return;        // stopped while the previous node was completing
+        if (isConcurrent()) {
+            node.runPreTask();
+            submit(node);
+            return;
+        }
         node.addStateListener(this);
         node.runPreTask();
-        node.run();
+        runNode(node);
+    }
+
+
+    // runs a node on this thread
+    private void runNode(Node node) throws Exception {
+        if (! markExecuting(node)) return;
+        try {
+            node.run();
+        }
+        finally {
+            finishRun(node);
+        }
     }
 
 
@@ -214,6 +434,246 @@ public class GraphRunner implements NodeStateChangeListener {
     }
 
 
+    /**
+     * Runs the workflow using the worker pool. The nodes that are ready to start
+     * (i.e. all of their predecessors have completed) are submitted first; as each
+     * node completes, any successors that become ready are submitted in turn. This
+     * method returns when no nodes remain executing.
+     * @param node the node selected to run or step to
+     */
+    private void launchConcurrent(Node node) throws NodeRunnerException {
+        _submitted.clear();
+        _completions = new LinkedBlockingQueue<>();
+        _activeCount = 0;
+        try {
+            Set<Node> ready = new HashSet<>();
+            if (node.hasCompleted()) {
+                if (! node.hasNext()) {
+                    reset();
+                    return;
+                }
+                collectReadyNext(node, ready);
+            }
+            else if (allPreviousCompleted(node)) {
+                ready.add(node);              // as for sequential, may resume a paused node
+            }
+            else {
+                collectReadyPrevious(node, ready);
+            }
+            for (Node readyNode : ready) {
+                start(readyNode);
+            }
+        }
+        catch (Exception e) {
+            awaitActive();
+            throw new NodeRunnerException(e.getMessage(), e);
+        }
+        awaitQuiescence();
+    }
+
+
+    // walks back from a node to find each uncompleted node whose predecessors have all
+    // completed
+    private void collectReadyPrevious(Node node, Set<Node> ready) {
+        if (node.canStart() && allPreviousCompleted(node)) {
+            ready.add(node);
+        }
+        else {
+            for (Node previous : node.previous()) {
+                if (! previous.hasCompleted()) {
+                    collectReadyPrevious(previous, ready);
+                }
+            }
+        }
+    }
+
+
+    private void collectReadyNext(Node node, Set<Node> ready) {
+        for (Node next : node.next()) {
+            if (isReady(next)) {
+                ready.add(next);
+            }
+        }
+    }
+
+
+    private boolean isReady(Node node) {
+        return node.canStart() && ! _submitted.contains(node) &&
+                allPreviousCompleted(node) && isInStepScope(node);
+    }
+
+
+    private boolean allPreviousCompleted(Node node) {
+        for (Node previous : node.previous()) {
+            if (! previous.hasCompleted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // when stepping, only the step-to node and its ancestors may be run
+    private boolean isInStepScope(Node node) {
+        return _runnerState != RunnerState.STEPPING || _stepToNode == null ||
+                node == _stepToNode || isAncestor(node, _stepToNode);
+    }
+
+
+    private boolean isAncestor(Node node, Node descendant) {
+        for (Node previous : descendant.previous()) {
+            if (previous == node || isAncestor(node, previous)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    // hands a node to the worker pool; state changes and completion are reported
+    // back through the completions queue
+    private void submit(Node node) {
+        BlockingQueue<NodeCompletion> completions = _completions;
+        if (! markExecuting(node)) return;
+        _submitted.add(node);
+        _activeCount++;
+        // workers carry the launching user's security context, as the run's events
+        // are logged against the logged-on user
+        getExecutor().execute(new DelegatingSecurityContextRunnable(() -> {
+            Throwable error = null;
+            try {
+                node.run();
+            }
+            catch (Throwable t) {
+                error = t;
+            }
+            finishRun(node);
+            completions.add(new NodeCompletion(node, error));    // orphaned if stopped
+        }));
+    }
+
+
+    /**
+     * Waits for each submitted node to complete or pause, announcing each as it does
+     * and submitting any successors made ready by a completion. Listeners and node
+     * post-tasks are called on this (the calling) thread. If a node fails, no further
+     * nodes are submitted and the failure is rethrown once the active nodes finish.
+     */
+    private void awaitQuiescence() throws NodeRunnerException {
+        Throwable failure = null;
+        Node failedNode = null;
+        while (_activeCount > 0) {
+            NodeCompletion completion = takeCompletion();
+            _activeCount--;
+            _executing.remove(completion.node);
+            if (completion.error != null) {
+                if (failure == null) {
+                    failure = completion.error;
+                    failedNode = completion.node;
+                }
+                continue;
+            }
+            if (failure != null) continue;           // start nothing new after a failure
+
+            Node node = completion.node;
+            try {
+                switch (node.getState()) {
+                    case COMPLETED: completeConcurrent(node); break;
+                    case PAUSED: {
+                        _paused.add(node);
+                        announceNodePaused(node);
+                        break;
+                    }
+                }
+            }
+            catch (Exception e) {
+                failure = e;
+                failedNode = node;
+            }
+        }
+
+        if (failure != null) {
+            String msg = failedNode.getLabel() + ": " + failure.getMessage();
+            throw new NodeRunnerException(msg, failure);
+        }
+
+        // stay in a running state while any pattern node awaits a repair decision
+        if (_paused.isEmpty() && _runnerState != RunnerState.IDLE) {
+            reset();
+        }
+    }
+
+
+    // drains without processing, used when a failure occurs while starting nodes
+    private void awaitActive() {
+        while (_activeCount > 0) {
+            try {
+                takeCompletion();
+            }
+            catch (NodeRunnerException e) {
+                break;
+            }
+            _activeCount--;
+        }
+    }
+
+
+    private NodeCompletion takeCompletion() throws NodeRunnerException {
+        try {
+            return _completions.take();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new NodeRunnerException("Interrupted while waiting for nodes to complete");
+        }
+    }
+
+
+    private void completeConcurrent(Node node) throws Exception {
+        node.runPostTask();
+        announceNodeCompleted(node);
+
+        switch (_runnerState) {
+            case STEPPING: if (node == _stepToNode) {
+                reset();
+                break;
+            }
+            case RUNNING: {
+                Set<Node> ready = new HashSet<>();
+                collectReadyNext(node, ready);
+                for (Node next : ready) {
+                    start(next);
+                }
+                break;
+            }
+            case IDLE: node.reset(); break;
+        }
+    }
+
+
+    private ThreadPoolExecutor getExecutor() {
+        if (_executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            _executor = new ThreadPoolExecutor(_maxConcurrency, _maxConcurrency,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "graph-runner-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            _executor.allowCoreThreadTimeOut(true);           // release idle workers
+        }
+        return _executor;
+    }
+
+
+    private void shutdownExecutor() {
+        if (_executor != null) {
+            _executor.shutdown();
+            _executor = null;
+        }
+    }
+
+
     private void setState(RunnerState state) {
         _runnerState = state;
         announceStateChanged(_runnerState);
@@ -242,6 +702,9 @@ public class GraphRunner implements NodeStateChangeListener {
 
     private void announceNodeEvent(EventType eventType, Node node) {
         _eventListeners.forEach(l -> l.runnerEvent(new GraphRunnerEvent(eventType, node)));
+        if (eventType != EventType.NODE_ROLLBACK) {
+            NodeMetricsPublisher.record(_graph, node);
+        }
         EventLogger.nodeExecutionEvent(_graph, node, eventType,
                 getLogComment(eventType, node));
     }
@@ -291,4 +754,23 @@ public class GraphRunner implements NodeStateChangeListener {
         return String.format("%s %d rows in %.3f seconds", action, rows, seconds);
     }
 
+
+    // a run started by actionAsync
+    private static class Execution {
+        volatile Future<?> future;
+        volatile boolean stopped;
+    }
+
+
+    // the outcome of a node's run on a worker thread
+    private static class NodeCompletion {
+        final Node node;
+        final Throwable error;
+
+        NodeCompletion(Node node, Throwable error) {
+            this.node = node;
+            this.error = error;
+        }
+    }
+
 }
@@ -22,6 +22,8 @@ import com.processdataquality.praeclarus.logging.repository.*;
 import com.processdataquality.praeclarus.node.Node;
 import com.processdataquality.praeclarus.option.Option;
 import com.processdataquality.praeclarus.security.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -29,6 +31,10 @@ import org.springframework.stereotype.Component;
 import java.time.format.DateTimeFormatter;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Michael Adams
@@ -40,6 +46,11 @@ public class EventLogger {
     public static final DateTimeFormatter dtFormatter =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+    private static final Logger LOG = LoggerFactory.getLogger(EventLogger.class);
+
+    // saves made when a node's output is committed, off the repo's writer thread
+    private static final ExecutorService commitUpdater = createCommitUpdater();
+
     private static final Set<LogEventListener> listeners = new HashSet<>();
     private static boolean capturing = true;
 
@@ -172,6 +183,21 @@ public class EventLogger {
         NodeExecutionEvent event = new NodeExecutionEvent(graph, node, eventType,
                 loggedOnUserName(), outcome);
         save(nodeExecutionEventRepository, event);
+
+        // record the commit id once the node's output has been written to the repo.
+        // The save runs on its own thread, so the repo's writer isn't held up by the
+        // database
+        if (capturing && event.getCommitId() == null && node.getTableID() != null) {
+            node.getCommit().thenAcceptAsync(commitID -> {
+                if (commitID != null) {
+                    event.setCommitId(commitID);
+                    nodeExecutionEventRepository.save(event);
+                }
+            }, commitUpdater).exceptionally(e -> {
+                LOG.warn("Failed to record the commit id of node '{}'", node.getLabel(), e);
+                return null;
+            });
+        }
     }
 
 
@@ -231,4 +257,16 @@ public class EventLogger {
         listeners.forEach(l -> l.eventLogged(event));
     }
 
+
+    private static ExecutorService createCommitUpdater() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "pdq-event-logger");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
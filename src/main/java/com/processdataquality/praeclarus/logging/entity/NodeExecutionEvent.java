@@ -19,6 +19,7 @@ package com.processdataquality.praeclarus.logging.entity;
 import com.processdataquality.praeclarus.logging.EventType;
 import com.processdataquality.praeclarus.graph.Graph;
 import com.processdataquality.praeclarus.node.Node;
+import com.processdataquality.praeclarus.node.NodeMetrics;
 
 import javax.persistence.Entity;
 
@@ -33,14 +34,39 @@ public class NodeExecutionEvent extends NodeEvent {
     private String commitId;
     private String note;
 
+    // resources used by the node's latest run, if it has run
+    private Long rowsIn;
+    private Long rowsOut;
+    private Double rowsPerSecond;
+    private Long runMillis;
+    private Long cpuMillis;
+    private Long allocatedBytes;
+    private Long gcMillis;
+
     protected NodeExecutionEvent() { }
 
     public NodeExecutionEvent(Graph graph, Node node, EventType eventType,
                               String user, String note) {
         super(graph, node, eventType, user);
         setTableId(node.getTableID());
-        setCommitId(node.getCommitID());
+        setCommitId(node.peekCommitID());           // may still be queued for commit
         setNote(note);
+        setMetrics(node.getMetrics());
+    }
+
+
+    private void setMetrics(NodeMetrics metrics) {
+        if (metrics.hasRun()) {
+            rowsIn = metrics.getRowsIn();
+            rowsOut = metrics.getRowsOut();
+            rowsPerSecond = metrics.getRowsPerSecond();
+            runMillis = metrics.getWallNanos(NodeMetrics.Phase.RUN) / 1000000;
+            long cpuNanos = metrics.getCpuNanos(NodeMetrics.Phase.RUN);
+            cpuMillis = cpuNanos >= 0 ? cpuNanos / 1000000 : null;
+            long allocated = metrics.getAllocatedBytes(NodeMetrics.Phase.RUN);
+            allocatedBytes = allocated >= 0 ? allocated : null;
+            gcMillis = metrics.getGcMillis();
+        }
     }
 
 
@@ -59,6 +85,21 @@ public class NodeExecutionEvent extends NodeEvent {
     public void setNote(String outcome) { this.note = outcome; }
 
 
+    public Long getRowsIn() { return rowsIn; }
+
+    public Long getRowsOut() { return rowsOut; }
+
+    public Double getRowsPerSecond() { return rowsPerSecond; }
+
+    public Long getRunMillis() { return runMillis; }
+
+    public Long getCpuMillis() { return cpuMillis; }
+
+    public Long getAllocatedBytes() { return allocatedBytes; }
+
+    public Long getGcMillis() { return gcMillis; }
+
+
     @Override
     public String toString() {
         return super.toString() + "; Result: " + note;
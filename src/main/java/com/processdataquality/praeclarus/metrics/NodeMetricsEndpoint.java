@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/nodemetrics) listing the resources used by the most
+ * recent node executions. Aggregates are available under /actuator/metrics/pdq.node.*
+ */
+@Component
+@Endpoint(id = "nodemetrics")
+public class NodeMetricsEndpoint {
+
+    @ReadOperation
+    public List<Map<String, Object>> recentExecutions() {
+        return NodeMetricsPublisher.getRecent();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.metrics;
+
+import com.processdataquality.praeclarus.graph.Graph;
+import com.processdataquality.praeclarus.node.Node;
+import com.processdataquality.praeclarus.node.NodeMetrics;
+import com.processdataquality.praeclarus.node.NodeOutputCache;
+import com.processdataquality.praeclarus.repo.Repo;
+import com.processdataquality.praeclarus.repo.TableCache;
+import com.processdataquality.praeclarus.support.activitysimilaritymeasures.ContextSimilarityCache;
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the resources used by each node execution as Micrometer meters, tagged
+ * by plugin class and workflow id, and keeps the most recent executions for the
+ * 'nodemetrics' actuator endpoint. Also exposes the repo's table, node output and
+ * context similarity caches as gauges.
+ */
+@Component
+public class NodeMetricsPublisher {
+
+    private static final int RECENT_LIMIT = 100;
+    private static final Deque<Map<String, Object>> RECENT = new ArrayDeque<>();
+
+    private static MeterRegistry registry;
+
+    // Inject registry
+    public NodeMetricsPublisher(MeterRegistry meterRegistry) {
+        registry = meterRegistry;
+        registerCacheMeters();
+    }
+
+
+    /**
+     * Records the latest execution of a node
+     * @param graph the workflow the node belongs to (may be null)
+     * @param node the node
+     */
+    public static void record(Graph graph, Node node) {
+        NodeMetrics metrics = node.getMetrics();
+        if (! metrics.hasRun()) return;
+
+        String plugin = node.getPlugin().getClass().getName();
+        String workflow = graph != null && graph.getId() != null ? graph.getId() : "none";
+        if (registry != null) {
+            publish(metrics, Tags.of("plugin", plugin, "workflow", workflow));
+        }
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", new Date().toString());
+        entry.put("workflow", workflow);
+        entry.put("node", node.getLabel());
+        entry.put("plugin", plugin);
+        entry.put("rowsIn", metrics.getRowsIn());
+        entry.put("rowsOut", metrics.getRowsOut());
+        entry.put("rowsPerSecond", metrics.getRowsPerSecond());
+        for (NodeMetrics.Phase phase : NodeMetrics.Phase.values()) {
+            Map<String, Object> sample = new LinkedHashMap<>();
+            sample.put("wallMillis", metrics.getWallNanos(phase) / 1000000.0);
+            sample.put("cpuMillis", metrics.getCpuNanos(phase) / 1000000.0);
+            sample.put("allocatedBytes", metrics.getAllocatedBytes(phase));
+            entry.put(phase.name().toLowerCase(), sample);
+        }
+        entry.put("gcCount", metrics.getGcCount());
+        entry.put("gcMillis", metrics.getGcMillis());
+        synchronized (RECENT) {
+            RECENT.addFirst(entry);
+            if (RECENT.size() > RECENT_LIMIT) RECENT.removeLast();
+        }
+    }
+
+
+    /** @return the most recent node executions, latest first */
+    public static List<Map<String, Object>> getRecent() {
+        synchronized (RECENT) {
+            return new ArrayList<>(RECENT);
+        }
+    }
+
+
+    private static void publish(NodeMetrics metrics, Tags tags) {
+        NodeMetrics.Phase run = NodeMetrics.Phase.RUN;
+        Timer.builder("pdq.node.run.time").description("Wall-clock time of plugin runs")
+                .tags(tags).register(registry)
+                .record(metrics.getWallNanos(run), TimeUnit.NANOSECONDS);
+        if (metrics.getCpuNanos(run) >= 0) {
+            Timer.builder("pdq.node.cpu.time").description(
+                    "CPU time of the thread running each plugin; excludes work the plugin "
+                            + "hands to other threads, e.g. parallel streams")
+                    .tags(tags).register(registry)
+                    .record(metrics.getCpuNanos(run), TimeUnit.NANOSECONDS);
+        }
+        if (metrics.getAllocatedBytes(run) >= 0) {
+            DistributionSummary.builder("pdq.node.allocated").baseUnit("bytes")
+                    .description("Heap allocated by the thread running each plugin; excludes "
+                            + "allocations by other threads, e.g. parallel streams")
+                    .tags(tags).register(registry)
+                    .record(metrics.getAllocatedBytes(run));
+        }
+        DistributionSummary.builder("pdq.node.rows.in").baseUnit("rows")
+                .tags(tags).register(registry).record(metrics.getRowsIn());
+        DistributionSummary.builder("pdq.node.rows.out").baseUnit("rows")
+                .tags(tags).register(registry).record(metrics.getRowsOut());
+        DistributionSummary.builder("pdq.node.throughput").baseUnit("rows/s")
+                .tags(tags).register(registry).record(metrics.getRowsPerSecond());
+        Timer.builder("pdq.node.gc.time").description("JVM-wide GC time during plugin runs")
+                .tags(tags).register(registry)
+                .record(metrics.getGcMillis(), TimeUnit.MILLISECONDS);
+
+        for (NodeMetrics.Phase phase : EnumSet.of(NodeMetrics.Phase.PRE_TASK,
+                NodeMetrics.Phase.POST_TASK)) {
+            Timer.builder("pdq.node.task.time").description("Wall-clock time of node UI tasks")
+                    .tags(tags).tag("phase", phase.name().toLowerCase()).register(registry)
+                    .record(metrics.getWallNanos(phase), TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    private static void registerCacheMeters() {
+        TableCache tables = Repo.getTableCache();
+        FunctionCounter.builder("pdq.repo.table.cache.hits", tables, TableCache::getHits)
+                .register(registry);
+        FunctionCounter.builder("pdq.repo.table.cache.misses", tables, TableCache::getMisses)
+                .register(registry);
+        FunctionCounter.builder("pdq.repo.table.cache.evictions", tables, TableCache::getEvictions)
+                .register(registry);
+        Gauge.builder("pdq.repo.table.cache.bytes", tables, TableCache::getBytes)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("pdq.repo.table.cache.hit.rate", tables, TableCache::getHitRate)
+                .register(registry);
+
+        FunctionCounter.builder("pdq.node.output.cache.hits", NodeOutputCache.class,
+                c -> NodeOutputCache.getHits()).register(registry);
+        FunctionCounter.builder("pdq.node.output.cache.repo.hits", NodeOutputCache.class,
+                c -> NodeOutputCache.getRepoHits()).register(registry);
+        FunctionCounter.builder("pdq.node.output.cache.misses", NodeOutputCache.class,
+                c -> NodeOutputCache.getMisses()).register(registry);
+        Gauge.builder("pdq.node.output.cache.bytes", NodeOutputCache.class,
+                c -> NodeOutputCache.getBytes()).baseUnit("bytes").register(registry);
+
+        FunctionCounter.builder("pdq.context.similarity.cache.hits", ContextSimilarityCache.class,
+                c -> ContextSimilarityCache.getHits()).register(registry);
+        FunctionCounter.builder("pdq.context.similarity.cache.misses", ContextSimilarityCache.class,
+                c -> ContextSimilarityCache.getMisses()).register(registry);
+        Gauge.builder("pdq.context.similarity.cache.bytes", ContextSimilarityCache.class,
+                c -> ContextSimilarityCache.getBytes()).baseUnit("bytes").register(registry);
+    }
+
+}
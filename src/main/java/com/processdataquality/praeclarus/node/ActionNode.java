@@ -39,7 +39,15 @@ public class ActionNode extends Node {
     @Override
     public void run() throws Exception {
         setState(NodeState.EXECUTING);
-        setOutput(((AbstractAction) getPlugin()).run(getInputs()));
+        String key = NodeOutputCache.key(getPlugin(), getPreviousOutputs());
+        NodeOutputCache.Result memoized = NodeOutputCache.get(key);
+        if (memoized != null) {
+            setOutput(memoized);                     // unchanged since an earlier run
+        }
+        else {
+            setOutput(((AbstractAction) getPlugin()).run(getInputs()));
+            memoizeOutput(key);
+        }
         setState(NodeState.COMPLETED);
     }
 }
@@ -23,7 +23,9 @@ import com.processdataquality.praeclarus.logging.EventLogger;
 import com.processdataquality.praeclarus.plugin.AbstractPlugin;
 import com.processdataquality.praeclarus.repo.Repo;
 import com.processdataquality.praeclarus.util.DataCollection;
-import org.eclipse.jgit.api.errors.GitAPIException;
+import com.processdataquality.praeclarus.util.TableView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import tech.tablesaw.api.Table;
 
 import java.io.IOException;
@@ -31,6 +33,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A node in a graph, encapsulating a plugin. This abstract class provides base
@@ -41,9 +46,13 @@ import java.util.Set;
  */
 public abstract class Node {
 
+    private static final Logger LOG = LoggerFactory.getLogger(Node.class);
+
     private final NodeStopWatch _stopWatch = new NodeStopWatch();
+    private final NodeMetrics _metrics = new NodeMetrics();
 
     private String _commitID;           // the commit version of the table in the repo
+    private CompletableFuture<String> _pendingCommit;   // set while a commit is queued
     private String _tableID;            // the file name of the table in the repo
     private String _label;              // a name for this node
 
@@ -64,7 +73,7 @@ public abstract class Node {
         _plugin = plugin;
         _next = new HashSet<>();
         _previous = new HashSet<>();
-        _listeners = new ArrayList<>();
+        _listeners = new CopyOnWriteArrayList<>();     // notified from worker threads
         _state = NodeState.UNSTARTED;
     }
 
@@ -75,7 +84,7 @@ public abstract class Node {
 
     /** Listen for state changes */
     public void addStateListener(NodeStateChangeListener listener) {
-        _listeners.add(listener);
+        if (! _listeners.contains(listener)) _listeners.add(listener);
     }
 
     public boolean removeStateListener(NodeStateChangeListener listener) {
@@ -88,6 +97,7 @@ public abstract class Node {
         if (_state != state) {
             _state = state;
             _stopWatch.stateChange(state);
+            measure(state);
             announceStateChange();
         }
     }
@@ -98,6 +108,9 @@ public abstract class Node {
     /** @return the list of execution timings for this node */
     public NodeStopWatch getStopWatch() { return _stopWatch; }
 
+    /** @return the resources used by the latest execution of this node */
+    public NodeMetrics getMetrics() { return _metrics; }
+
 
     /**
      * Allows UIs to run any preliminary code before the plugin's run
@@ -111,7 +124,14 @@ public abstract class Node {
      * @return true if the run was successful or the task hasn't been set
      */
     public boolean runPreTask() {
-        return _preTask == null || _preTask.run(this);
+        _metrics.clear();                           // a new execution is starting
+        _metrics.start(NodeMetrics.Phase.PRE_TASK);
+        try {
+            return _preTask == null || _preTask.run(this);
+        }
+        finally {
+            _metrics.stop(NodeMetrics.Phase.PRE_TASK);
+        }
     }
 
 
@@ -127,7 +147,13 @@ public abstract class Node {
      * @return true if the run was successful or the task hasn't been set
      */
     public boolean runPostTask() {
-        return _postTask == null || _postTask.run(this);
+        _metrics.start(NodeMetrics.Phase.POST_TASK);
+        try {
+            return _postTask == null || _postTask.run(this);
+        }
+        finally {
+            _metrics.stop(NodeMetrics.Phase.POST_TASK);
+        }
     }
 
 
@@ -224,9 +250,57 @@ public abstract class Node {
     public String getID() { return _plugin.getID(); }
 
     
-    public String getCommitID() { return _commitID; }
+    /**
+     * @return the commit version of this node's output table in the repo. If the
+     * output is still queued for commit, waits until the commit completes
+     */
+    public String getCommitID() {
+        CompletableFuture<String> pending = _pendingCommit;
+        if (pending != null) {
+            try {
+                _commitID = pending.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch (ExecutionException e) {
+                LOG.error("Failed to commit table to repo: {}", e.getCause().getMessage());
+            }
+            _pendingCommit = null;
+        }
+        return _commitID;
+    }
+
 
-    public void setCommitID(String id) { _commitID = id; }
+    /**
+     * @return the commit version of this node's output table, or null if there is
+     * none or it is still queued for commit
+     */
+    public String peekCommitID() {
+        CompletableFuture<String> pending = _pendingCommit;
+        if (pending != null) {
+            return pending.isDone() && ! pending.isCompletedExceptionally() ?
+                    pending.join() : null;
+        }
+        return _commitID;
+    }
+
+
+    /**
+     * @return a future that completes with the commit version of this node's
+     * output table
+     */
+    public CompletableFuture<String> getCommit() {
+        CompletableFuture<String> pending = _pendingCommit;
+        return pending != null ? pending : CompletableFuture.completedFuture(_commitID);
+    }
+
+
+    public void setCommitID(String id) {
+        _commitID = id;
+        _pendingCommit = null;
+    }
 
 
     /**
@@ -266,14 +340,28 @@ public abstract class Node {
 
 
     /**
+     * Each input is a copy-on-write view of a predecessor's output, so this node's
+     * plugin can add, remove and replace columns without affecting the predecessor
+     * or any other node sharing its output
      * @return the set of output tables from all predecessor nodes
      */
     public List<Table> getInputs() {
         List<Table> inputs = new ArrayList<>();
+        getPreviousOutputs().forEach(output -> inputs.add(TableView.of(output)));
+        return inputs;
+    }
+
+
+    /**
+     * @return the output tables themselves of all predecessor nodes, in the same
+     * order as getInputs(). Not to be modified
+     */
+    protected List<Table> getPreviousOutputs() {
+        List<Table> outputs = new ArrayList<>();
         _previous.forEach(node -> {
-            if (node.getOutput() != null) inputs.add(node.getOutput());
+            if (node.getOutput() != null) outputs.add(node.getOutput());
         });
-        return inputs;
+        return outputs;
     }
 
 
@@ -318,13 +406,37 @@ public abstract class Node {
     }
 
 
+    /**
+     * Sets the output table for this node from a memoized result of an earlier run,
+     * which is already committed to the repo
+     * @param result the memoized output
+     */
+    protected void setOutput(NodeOutputCache.Result result) {
+        _output = result.getTable();
+        _tableID = result.getTableID();
+        _commitID = null;
+        _pendingCommit = result.getCommit();
+    }
+
+
+    /**
+     * Memoizes this node's current output against a key
+     * @param key the key, built from the plugin and its inputs
+     */
+    protected void memoizeOutput(String key) {
+        if (_output != null && _plugin.getAuxiliaryDatasets().isEmpty()) {
+            NodeOutputCache.put(key, _output, getCommit());
+        }
+    }
+
+
     protected DataCollection getAuxiliaryDatasets() {
         return _plugin.getAuxiliaryDatasets();
     }
 
 
     public void loadOutput(String tableID) throws IOException {
-        _output = Repo.getTable(_commitID, tableID);
+        _output = Repo.getTable(getCommitID(), tableID);
         if (_output != null) {
             _tableID = tableID;
             _state = NodeState.COMPLETED;
@@ -349,13 +461,11 @@ public abstract class Node {
     }
 
 
+    // queued, so the workflow doesn't wait on the write
     private void commit(Table t) {
-        try {
-            _commitID = Repo.commit(t, getCommitMessage(), EventLogger.loggedOnUserName());
-        }
-        catch (IOException | GitAPIException e) {
-            System.out.println("Failed to commit table to repo: " + e.getMessage());
-        }
+        _commitID = null;
+        _pendingCommit = Repo.commitAsync(t, getCommitMessage(),
+                EventLogger.loggedOnUserName());
     }
 
 
@@ -369,7 +479,8 @@ public abstract class Node {
         JsonObject json = new JsonObject();
         json.add("id", getID());
         json.add("label", _label);
-        if (_commitID != null) json.add("commitID", _commitID);
+        String commitID = peekCommitID();      // don't block on a queued commit
+        if (commitID != null) json.add("commitID", commitID);
         if (_tableID != null) json.add("tableID", _tableID);
 
         json.add("plugin", _plugin.getClass().getName());
@@ -378,6 +489,30 @@ public abstract class Node {
     }
 
 
+    // measures the plugin run between the same state changes as the stopwatch
+    private void measure(NodeState state) {
+        switch (state) {
+            case EXECUTING: {
+                _metrics.clear(NodeMetrics.Phase.RUN);
+                _metrics.clear(NodeMetrics.Phase.POST_TASK);
+                long rowsIn = 0;
+                for (Table input : getPreviousOutputs()) {
+                    rowsIn += input.rowCount();
+                }
+                _metrics.setRowsIn(rowsIn);
+            }                                                  // deliberate fallthrough
+            case RESUMED: _metrics.start(NodeMetrics.Phase.RUN); break;
+            case COMPLETED:                                    // deliberate fallthrough
+            case PAUSED: {
+                _metrics.stop(NodeMetrics.Phase.RUN);
+                Table output = getOutput();
+                _metrics.setRowsOut(output != null ? output.rowCount() : 0);
+                break;
+            }
+        }
+    }
+
+
     protected void announceStateChange() throws Exception {
         for (NodeStateChangeListener listener : _listeners) {
             listener.nodeStateChanged(this);
@@ -37,6 +37,17 @@ public class NodeLoader {
 
     
     public Node fromJson(JsonObject json) throws IOException {
+        return fromJson(json, true);
+    }
+
+
+    /**
+     * @param json the node's JSON representation
+     * @param loadOutput if true, and the node was saved in a completed state, its
+     *                   output is reloaded from the repo
+     * @return the rehydrated node, or null if its plugin can't be instantiated
+     */
+    public Node fromJson(JsonObject json, boolean loadOutput) throws IOException {
         Node node = null;
         AbstractPlugin plugin = newPluginInstance(json.getString("plugin", ""));
         if (plugin != null) {
@@ -47,7 +58,7 @@ public class NodeLoader {
             String tableID = json.getString("tableID", "");
             node = NodeFactory.create(plugin, nodeID);
             node.setLabel(label);
-            if (!commitID.isEmpty()) {
+            if (loadOutput && !commitID.isEmpty()) {
                 node.setCommitID(commitID);
                 if (!tableID.isEmpty()) {
                     node.loadOutput(tableID);           // loads from repo
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.node;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Records the resources used by the most recent execution of a node: wall-clock
+ * time, CPU time and heap bytes allocated by the executing thread, for each of the
+ * pre-task, the plugin run and the post-task, plus the rows in and out of the run.
+ * Garbage collections during the run are also counted, although these are JVM-wide
+ * rather than attributable to the node alone.
+ *
+ * CPU time and allocations are read for the executing thread only. Plugins that
+ * split their work across other threads (parallel streams, the common ForkJoin
+ * pool, their own executors) are undercounted by the work done on those threads;
+ * wall-clock time is unaffected.
+ *
+ * Like the NodeStopWatch, a run is measured from its EXECUTING (or RESUMED) state
+ * to its PAUSED or COMPLETED state, so a pattern node's detect and repair stages
+ * are added together.
+ */
+public class NodeMetrics {
+
+    public enum Phase { PRE_TASK, RUN, POST_TASK }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final double NANO = Math.pow(10, 9);
+
+    private final Map<Phase, Sample> _samples = new EnumMap<>(Phase.class);
+    private final Map<Phase, Probe> _probes = new EnumMap<>(Phase.class);
+    private long _rowsIn;
+    private long _rowsOut;
+
+
+    public NodeMetrics() { }
+
+
+    /** Clears all samples, ready for a new execution */
+    public synchronized void clear() {
+        _samples.clear();
+        _probes.clear();
+        _rowsIn = 0;
+        _rowsOut = 0;
+    }
+
+
+    /** Clears the sample for one phase */
+    public synchronized void clear(Phase phase) {
+        _samples.remove(phase);
+        _probes.remove(phase);
+    }
+
+
+    /**
+     * Begins measuring a phase on the current thread
+     * @param phase the phase to measure
+     */
+    public synchronized void start(Phase phase) {
+        _probes.put(phase, new Probe());
+    }
+
+
+    /**
+     * Ends measuring a phase on the current thread, adding the resources used since
+     * the phase was started to any already recorded for it
+     * @param phase the phase being measured
+     */
+    public synchronized void stop(Phase phase) {
+        Probe probe = _probes.remove(phase);
+        if (probe != null) {
+            _samples.computeIfAbsent(phase, p -> new Sample()).add(probe);
+        }
+    }
+
+
+    public synchronized void setRowsIn(long rows) { _rowsIn = rows; }
+
+    public synchronized void setRowsOut(long rows) { _rowsOut = rows; }
+
+    public synchronized long getRowsIn() { return _rowsIn; }
+
+    public synchronized long getRowsOut() { return _rowsOut; }
+
+
+    /** @return true if the plugin run has been measured */
+    public synchronized boolean hasRun() { return _samples.containsKey(Phase.RUN); }
+
+
+    public synchronized long getWallNanos(Phase phase) {
+        Sample sample = _samples.get(phase);
+        return sample != null ? sample.wallNanos : 0;
+    }
+
+
+    /** @return CPU time, or -1 if the JVM doesn't measure thread CPU time */
+    public synchronized long getCpuNanos(Phase phase) {
+        Sample sample = _samples.get(phase);
+        return sample != null ? sample.cpuNanos : 0;
+    }
+
+
+    /** @return bytes allocated, or -1 if the JVM doesn't measure thread allocations */
+    public synchronized long getAllocatedBytes(Phase phase) {
+        Sample sample = _samples.get(phase);
+        return sample != null ? sample.allocatedBytes : 0;
+    }
+
+
+    public synchronized long getGcCount() {
+        Sample sample = _samples.get(Phase.RUN);
+        return sample != null ? sample.gcCount : 0;
+    }
+
+
+    public synchronized long getGcMillis() {
+        Sample sample = _samples.get(Phase.RUN);
+        return sample != null ? sample.gcMillis : 0;
+    }
+
+
+    /**
+     * @return the number of input rows processed per second of the plugin run, or
+     * the output rows per second for nodes without inputs (i.e. readers)
+     */
+    public synchronized double getRowsPerSecond() {
+        long wallNanos = getWallNanos(Phase.RUN);
+        if (wallNanos <= 0) return 0;
+        long rows = _rowsIn > 0 ? _rowsIn : _rowsOut;
+        return rows / (wallNanos / NANO);
+    }
+
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ?
+                THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() &&
+                    threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+
+    // the readings at the start of a phase
+    private static class Probe {
+        final long wallNanos = System.nanoTime();
+        final long cpuNanos = cpuTime();
+        final long allocatedBytes = allocatedBytes();
+        final long[] gc = gcTotals();
+    }
+
+
+    // the accumulated readings for a phase
+    private static class Sample {
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        long gcCount;
+        long gcMillis;
+
+        void add(Probe probe) {
+            wallNanos += System.nanoTime() - probe.wallNanos;
+            cpuNanos = accumulate(cpuNanos, probe.cpuNanos, cpuTime());
+            allocatedBytes = accumulate(allocatedBytes, probe.allocatedBytes, allocatedBytes());
+            long[] gc = gcTotals();
+            gcCount += gc[0] - probe.gc[0];
+            gcMillis += gc[1] - probe.gc[1];
+        }
+
+        // -1 marks a reading the JVM doesn't support
+        private long accumulate(long total, long start, long end) {
+            if (total < 0 || start < 0 || end < 0) return -1;
+            return total + (end - start);
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.node;
+
+import com.eclipsesource.json.JsonObject;
+import com.processdataquality.praeclarus.plugin.AbstractPlugin;
+import com.processdataquality.praeclarus.repo.Repo;
+import com.processdataquality.praeclarus.repo.TableCache;
+import com.processdataquality.praeclarus.util.TableFingerprint;
+import com.processdataquality.praeclarus.util.TableView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.tablesaw.api.Table;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes node outputs against a content-addressed key made up of the plugin's
+ * class, its changed option values and a fingerprint of each of its inputs. A node
+ * whose key has been seen before can take the stored output instead of re-running
+ * its plugin.
+ *
+ * There are two layers. The first holds copies of recent outputs in memory, bounded
+ * by an approximate byte budget and evicted least-recently-used first. The second
+ * maps each key to the commit and table ids under which the output was committed
+ * to the repo; it is persisted alongside the repo so that an output evicted from
+ * memory, or produced in an earlier session, is fetched from the repo rather
+ * than recomputed.
+ */
+public class NodeOutputCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodeOutputCache.class);
+    private static final File INDEX_FILE = new File("../pdq_repo_cache.properties");
+
+    private static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 8;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, Entry> ENTRIES =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static final Properties INDEX = loadIndex();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong REPO_HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+    private static long _bytes;
+
+    private NodeOutputCache() { }
+
+
+    /**
+     * Builds the key for a plugin run against a set of inputs
+     * @param plugin the plugin to be run
+     * @param inputs the plugin's input tables
+     * @return the key
+     */
+    public static String key(AbstractPlugin plugin, List<Table> inputs) {
+        List<String> parts = new ArrayList<>();
+        parts.add(plugin.getClass().getName());
+        parts.add(optionsAsString(plugin));
+        for (Table input : inputs) {
+            parts.add(TableFingerprint.of(input));
+        }
+        return TableFingerprint.digest(parts.toArray(new String[0]));
+    }
+
+
+    /**
+     * Builds the key for a plugin run against something other than tables, such as
+     * the source of a reader
+     * @param plugin the plugin to be run
+     * @param inputDescriptor a string that changes whenever the input does
+     * @return the key
+     */
+    public static String key(AbstractPlugin plugin, String inputDescriptor) {
+        return TableFingerprint.digest(plugin.getClass().getName(),
+                optionsAsString(plugin), inputDescriptor);
+    }
+
+
+    /**
+     * Gets a previously stored output for a key
+     * @param key the key
+     * @return the stored output, or null if there is none. The table returned is
+     * a copy-on-write view of the stored output
+     */
+    public static Result get(String key) {
+        Entry entry;
+        synchronized (NodeOutputCache.class) {
+            entry = ENTRIES.get(key);
+        }
+        if (entry != null) {
+            HITS.incrementAndGet();
+            return new Result(TableView.of(entry.table), entry.commit, entry.tableID);
+        }
+
+        String[] location = getLocation(key);
+        if (location != null) {
+            try {
+                Table table = Repo.getTable(location[0], location[1]);
+                if (table != null && table.columnCount() > 0) {
+                    REPO_HITS.incrementAndGet();
+                    CompletableFuture<String> commit =
+                            CompletableFuture.completedFuture(location[0]);
+                    store(key, new Entry(TableView.of(table), commit, location[1]));
+                    return new Result(TableView.of(table), commit, location[1]);
+                }
+            }
+            catch (Exception e) {
+                LOG.warn("Failed to load memoized output from repo: {}", e.getMessage());
+            }
+            removeLocation(key);
+        }
+        MISSES.incrementAndGet();
+        return null;
+    }
+
+
+    /**
+     * Stores a node's output against a key
+     * @param key the key
+     * @param table the output (a view of it is stored, so later structural changes
+     *              to the table itself are not seen)
+     * @param commit completes with the id of the repo commit the output is stored in
+     */
+    public static void put(String key, Table table, CompletableFuture<String> commit) {
+        if (key == null || table == null) return;
+        String tableID = table.name();
+        store(key, new Entry(TableView.of(table), commit, tableID));
+        commit.thenAccept(commitID -> {
+            if (commitID != null) putLocation(key, commitID, tableID);
+        });
+    }
+
+
+    /**
+     * Removes all in-memory entries. The repo index is kept
+     */
+    public static synchronized void clear() {
+        ENTRIES.clear();
+        _bytes = 0;
+    }
+
+
+    public static long getHits() { return HITS.get(); }
+
+    public static long getRepoHits() { return REPO_HITS.get(); }
+
+    public static long getMisses() { return MISSES.get(); }
+
+    public static long getEvictions() { return EVICTIONS.get(); }
+
+    public static synchronized long getBytes() { return _bytes; }
+
+    public static synchronized int size() { return ENTRIES.size(); }
+
+
+    private static synchronized void store(String key, Entry entry) {
+        Entry previous = ENTRIES.put(key, entry);
+        if (previous != null) _bytes -= previous.bytes;
+        _bytes += entry.bytes;
+
+        Iterator<Entry> itr = ENTRIES.values().iterator();
+        while (_bytes > MAX_BYTES && itr.hasNext()) {
+            Entry eldest = itr.next();
+            if (eldest == entry) break;                // always keep the newest
+            itr.remove();
+            _bytes -= eldest.bytes;
+            EVICTIONS.incrementAndGet();
+        }
+    }
+
+
+    // the changed options, in name order so the key doesn't depend on map ordering
+    private static String optionsAsString(AbstractPlugin plugin) {
+        JsonObject changes = plugin.getOptions().getChangesAsJson();
+        List<String> names = new ArrayList<>(changes.names());
+        Collections.sort(names);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            sb.append(name).append('=').append(changes.get(name)).append(';');
+        }
+        return sb.toString();
+    }
+
+
+    private static String[] getLocation(String key) {
+        String value;
+        synchronized (INDEX) {
+            value = INDEX.getProperty(key);
+        }
+        if (value != null) {
+            String[] location = value.split(":", 2);
+            if (location.length == 2) return location;
+        }
+        return null;
+    }
+
+
+    private static void putLocation(String key, String commitID, String tableID) {
+        synchronized (INDEX) {
+            INDEX.setProperty(key, commitID + ":" + tableID);
+            saveIndex();
+        }
+    }
+
+
+    private static void removeLocation(String key) {
+        synchronized (INDEX) {
+            if (INDEX.remove(key) != null) saveIndex();
+        }
+    }
+
+
+    private static Properties loadIndex() {
+        Properties index = new Properties();
+        if (INDEX_FILE.exists()) {
+            try (InputStream is = new FileInputStream(INDEX_FILE)) {
+                index.load(is);
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to load output cache index: {}", e.getMessage());
+            }
+        }
+        return index;
+    }
+
+
+    // caller holds the INDEX lock
+    private static void saveIndex() {
+        try (OutputStream os = new FileOutputStream(INDEX_FILE)) {
+            INDEX.store(os, "Node output cache: key = commitID:tableID");
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to save output cache index: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * A memoized output, with the repo location it was committed to
+     */
+    public static class Result {
+        private final Table table;
+        private final CompletableFuture<String> commit;
+        private final String tableID;
+
+        Result(Table table, CompletableFuture<String> commit, String tableID) {
+            this.table = table;
+            this.commit = commit;
+            this.tableID = tableID;
+        }
+
+        public Table getTable() { return table; }
+
+        public CompletableFuture<String> getCommit() { return commit; }
+
+        public String getTableID() { return tableID; }
+    }
+
+
+    private static class Entry {
+        final Table table;
+        final CompletableFuture<String> commit;
+        final String tableID;
+        final long bytes;
+
+        Entry(Table table, CompletableFuture<String> commit, String tableID) {
+            this.table = table;
+            this.commit = commit;
+            this.tableID = tableID;
+            this.bytes = TableCache.estimateBytes(table);
+        }
+    }
+
+}
@@ -17,6 +17,11 @@
 package com.processdataquality.praeclarus.node;
 
 /**
+ * Notified of each change to a node's execution state. Notifications are made on
+ * the thread running the node, which in a concurrent run is a worker thread, so a
+ * listener that updates UI components must do so through UI.access (see
+ * UiUtil.access)
+ *
  * @author Michael Adams
  * @date 22/11/21
  */
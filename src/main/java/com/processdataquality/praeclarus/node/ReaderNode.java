@@ -20,7 +20,9 @@ import com.processdataquality.praeclarus.exception.ReaderException;
 import com.processdataquality.praeclarus.plugin.AbstractPlugin;
 import com.processdataquality.praeclarus.reader.DataReader;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.io.Source;
 
+import java.io.File;
 import java.util.UUID;
 
 /**
@@ -45,9 +47,17 @@ public class ReaderNode extends Node {
         setState(NodeState.EXECUTING);
 
         try {
-            Table table = ((DataReader) getPlugin()).read();     // load from source
-            table.setName(UUID.randomUUID().toString());
-            setOutput(table);
+            String key = getCacheKey();
+            NodeOutputCache.Result memoized = key != null ? NodeOutputCache.get(key) : null;
+            if (memoized != null) {
+                setOutput(memoized);                    // source unchanged since last read
+            }
+            else {
+                Table table = ((DataReader) getPlugin()).read();     // load from source
+                table.setName(UUID.randomUUID().toString());
+                setOutput(table);
+                if (key != null) memoizeOutput(key);
+            }
             setState(NodeState.COMPLETED);
         }
         catch (Exception e) {
@@ -65,4 +75,26 @@ public class ReaderNode extends Node {
 
     }
 
+
+    /**
+     * Only file sources are memoized, keyed on the file's path, size and modification
+     * time. Streams can only be read once, and other readers (e.g. databases) have no
+     * cheap way of telling whether their data has changed.
+     * @return the memoization key for the reader's current source, or null if its
+     * output can't be memoized
+     */
+    private String getCacheKey() {
+        Source source;
+        try {
+            source = ((DataReader) getPlugin()).getSource();
+        }
+        catch (Exception e) {
+            return null;                                 // no source set
+        }
+        File file = source != null ? source.file() : null;
+        if (file == null || ! file.isFile()) return null;
+        return NodeOutputCache.key(getPlugin(), file.getAbsolutePath() + ":" +
+                file.length() + ":" + file.lastModified());
+    }
+
 }
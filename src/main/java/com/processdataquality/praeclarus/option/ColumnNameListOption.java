@@ -22,13 +22,29 @@ package com.processdataquality.praeclarus.option;
  */
 public class ColumnNameListOption extends Option {
 
+    // the list entry of an optional column that selects no column
+    public static final String NONE = "(none)";
+
     private String _selected;
+    private final boolean _optional;
 
     public ColumnNameListOption(String key) {
+        this(key, false);
+    }
+
+    /**
+     * @param key the option's name
+     * @param optional true if the user may select no column, listed as NONE
+     */
+    public ColumnNameListOption(String key, boolean optional) {
         super(key, "");                               // String value by default
+        _optional = optional;
     }
 
 
+    public boolean isOptional() { return _optional; }
+
+
     @Override
     public Object value() {                 // value can be String or List<String>
         return super.value() != null ? super.value() : "";
@@ -41,6 +57,14 @@ public class ColumnNameListOption extends Option {
         return "" ;
     }
 
+    /**
+     * @return the selected column name, or null if no column is selected
+     */
+    public String getSelectedColumnName() {
+        String selected = getSelected();
+        return selected.isEmpty() || NONE.equals(selected) ? null : selected;
+    }
+
     public void setSelected(String selected) {
         _selected = selected;
     }
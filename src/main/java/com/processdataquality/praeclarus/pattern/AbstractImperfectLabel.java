@@ -20,14 +20,27 @@ import com.processdataquality.praeclarus.annotation.Plugin;
 import com.processdataquality.praeclarus.exception.InvalidOptionException;
 import com.processdataquality.praeclarus.exception.OptionException;
 import com.processdataquality.praeclarus.option.ColumnNameListOption;
+import com.processdataquality.praeclarus.option.Option;
+import com.processdataquality.praeclarus.option.Options;
 import com.processdataquality.praeclarus.plugin.uitemplate.*;
+import com.processdataquality.praeclarus.support.math.MinHashBlocker;
+import com.processdataquality.praeclarus.util.TableView;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import tech.tablesaw.api.IntColumn;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.Selection;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * A base class for imperfect label plugins
@@ -37,20 +50,59 @@ import java.util.List;
  */
 public abstract class AbstractImperfectLabel extends AbstractDataPattern {
 
+	private static final Logger LOG = Logger.getLogger(AbstractImperfectLabel.class.getName());
+
 	// The table that will contain the results of the pattern detection
 	protected Table _detected;
 
+	// The distinct labels and their frequencies, for the column being detected on;
+	// kept only while a detection runs
+	private LabelDictionary _labels;
+	private StringColumn _labelColumn;
+
+	// The estimated recall of the last detection that used blocking
+	private double _blockingRecall = Double.NaN;
+
 	protected AbstractImperfectLabel() {
 		super();
 		getOptions().addDefault(new ColumnNameListOption("Column Name"));
 		// _detected = createResultTable();
 	}
 
-	// To be implemented by subclasses to detect distortion between two strings
-	abstract void detect(StringColumn column, String s1, String s2);
+	/**
+	 * Tests whether two distinct labels are imperfect versions of each other. It is
+	 * called for each unordered pair of distinct labels, concurrently, so
+	 * implementations must be symmetric and thread-safe. Subclasses that override
+	 * detect(Table) need not implement it.
+	 *
+	 * @param s1 a label
+	 * @param s2 another label
+	 * @return true if the labels are imperfect versions of each other
+	 */
+	protected boolean isImperfectPair(String s1, String s2) {
+		return false;
+	}
+
+	/**
+	 * Tests a single pair of labels, adding them to the results if they are
+	 * imperfect versions of each other
+	 *
+	 * @param column the column containing the labels
+	 * @param s1     a label
+	 * @param s2     another label
+	 */
+	protected void detect(StringColumn column, String s1, String s2) {
+		if (isImperfectPair(s1, s2)) {
+			addResult(column, s1, s2);
+		}
+	}
 
 	/**
-	 * Basic implementation of the interface method
+	 * Basic implementation of the interface method. The distinct labels of the
+	 * selected column are collected in one pass, then each unordered pair of them is
+	 * tested, so the cost depends on the size of the vocabulary rather than the
+	 * number of rows. Each matching pair is reported both ways round (so the user can
+	 * choose the direction of the repair), in order of the labels' first appearance.
 	 * 
 	 * @param table a table containing values to check for the pattern
 	 * @return a table where each row contains values detected using the pattern
@@ -59,29 +111,166 @@ public abstract class AbstractImperfectLabel extends AbstractDataPattern {
 	public Table detect(Table table) throws OptionException {
 		_detected = createResultTable();
 		StringColumn column = getSelectedColumn(table);
-		List<String> tested = new ArrayList<>(); // cache of strings already tested
-		List<String> compared = new ArrayList<>(); // cache of strings already compared to
-		for (int i = 0; i < column.size(); i++) {
-			String testValue = column.getString(i);
-			if (testValue == null || tested.contains(testValue))
-				continue;
-			tested.add(testValue);
-			compared.clear();
-			for (int j = 0; j < column.size(); j++) {
-				if (i != j) {
-					String compValue = column.getString(j);
-					if (compValue == null || compared.contains(compValue))
-						continue;
-					compared.add(compValue);
-					detect(column, testValue, compValue); // call method in subclass
+		try {
+			LabelDictionary labels = getLabelDictionary(column);
+			List<IntList> matches = findImperfectPairs(labels);
+			List<String> labels1 = new ArrayList<>();
+			List<String> labels2 = new ArrayList<>();
+			for (int i = 0; i < labels.size(); i++) {
+				IntList matched = matches.get(i);
+				for (int k = 0; k < matched.size(); k++) {
+					labels1.add(labels.get(i));
+					labels2.add(labels.get(matched.getInt(k)));
 				}
 			}
+			addResults(column, labels1, labels2);
+		}
+		finally {
+			releaseLabelDictionary();
 		}
 		return _detected;
 	}
 
 	/**
-	 * Repair instances of an imperfection pattern found within a table
+	 * Tests each unordered pair of distinct labels, in parallel across the available
+	 * cores, or only the candidate pairs if blocking is enabled
+	 *
+	 * @param labels the distinct labels of the selected column
+	 * @return for each label (by index), the ascending indexes of the labels it is
+	 *         an imperfect version of
+	 */
+	protected List<IntList> findImperfectPairs(LabelDictionary labels) {
+		MinHashBlocker blocker = getBlocker();
+		if (blocker != null) {
+			return findImperfectPairs(labels, blocker);
+		}
+		int size = labels.size();
+		IntList[] upper = new IntList[size];
+		IntStream.range(0, size).parallel().forEach(i -> {
+			IntList matched = new IntArrayList();
+			String s1 = labels.get(i);
+			for (int j = i + 1; j < size; j++) {
+				if (isImperfectPair(s1, labels.get(j))) {
+					matched.add(j);
+				}
+			}
+			upper[i] = matched;
+		});
+		return symmetricMatches(upper);
+	}
+
+	/**
+	 * Tests only the pairs of labels proposed by MinHash/LSH blocking, then estimates
+	 * the recall of the blocking by testing a sample of labels exhaustively
+	 *
+	 * @param labels  the distinct labels of the selected column
+	 * @param blocker proposes the candidate pairs
+	 * @return for each label (by index), the ascending indexes of the labels it is
+	 *         an imperfect version of
+	 */
+	protected List<IntList> findImperfectPairs(LabelDictionary labels, MinHashBlocker blocker) {
+		IntList[] candidates = blocker.candidates(labels.getLabels());
+		IntList[] upper = new IntList[labels.size()];
+		IntStream.range(0, labels.size()).parallel().forEach(i -> {
+			IntList matched = new IntArrayList();
+			IntList paired = candidates[i];
+			for (int k = 0; k < paired.size(); k++) {
+				int j = paired.getInt(k);
+				if (isImperfectPair(labels.get(i), labels.get(j))) {
+					matched.add(j);
+				}
+			}
+			upper[i] = matched;
+		});
+		estimateBlockingRecall(blocker, labels.getLabels(), candidates, this::isImperfectPair);
+		return symmetricMatches(upper);
+	}
+
+	/**
+	 * Adds the options that control MinHash/LSH blocking, for subclasses that can
+	 * use it. Blocking is off by default. Blocking prunes on label strings only: in
+	 * the contextual detectors it limits the string similarity dimension, while the
+	 * other dimensions are still computed for every pair of labels
+	 */
+	protected void addBlockingOptions() {
+		Options options = getOptions();
+		options.addDefault("LSH Blocking", false);
+		options.addDefault("LSH Bands", 32);
+		options.addDefault("LSH Rows per Band", 3);
+		options.addDefault("LSH Recall Sample Size", 100);
+	}
+
+	/**
+	 * @return a blocker configured from the options, or null if blocking is not
+	 *         supported or not enabled
+	 */
+	protected MinHashBlocker getBlocker() {
+		Option enabled = getOptions().get("LSH Blocking");
+		if (enabled == null || !enabled.asBoolean()) {
+			return null;
+		}
+		return new MinHashBlocker(getOptions().get("LSH Bands").asInt(),
+				getOptions().get("LSH Rows per Band").asInt());
+	}
+
+	/**
+	 * Estimates (and logs) the fraction of matching pairs that blocking found, by
+	 * comparing a sample of labels with all others
+	 *
+	 * @param blocker    the blocker that proposed the candidates
+	 * @param labels     the labels
+	 * @param candidates the candidate pairs, as returned by the blocker
+	 * @param matcher    the exhaustive test for a matching pair
+	 */
+	protected void estimateBlockingRecall(MinHashBlocker blocker, List<String> labels, IntList[] candidates,
+			BiPredicate<String, String> matcher) {
+		int sampleSize = getOptions().get("LSH Recall Sample Size").asInt();
+		_blockingRecall = blocker.estimateRecall(labels, candidates, matcher, sampleSize);
+		LOG.info(String.format("%s: LSH blocking recall estimated at %.3f from a sample of %d labels",
+				getName(), _blockingRecall, Math.max(0, Math.min(sampleSize, labels.size()))));
+		if (blocker.getSkippedBuckets() > 0) {
+			LOG.warning(String.format("%s: LSH blocking skipped %d oversized buckets (%d labels, counted per band)"
+					+ "; their pairs were not compared", getName(), blocker.getSkippedBuckets(),
+					blocker.getSkippedStrings()));
+		}
+	}
+
+	/**
+	 * @return the estimated recall of the last detection that used blocking, or NaN
+	 *         if it could not be estimated
+	 */
+	public double getBlockingRecall() {
+		return _blockingRecall;
+	}
+
+	/**
+	 * Mirrors the matches found for the upper triangle of the label pairs. Since the
+	 * labels are visited in order, each list stays in ascending order
+	 *
+	 * @param upper for each label, the indexes of the later labels it matches
+	 * @return for each label, the indexes of all the labels it matches
+	 */
+	protected List<IntList> symmetricMatches(IntList[] upper) {
+		List<IntList> matches = new ArrayList<>(upper.length);
+		for (int i = 0; i < upper.length; i++) {
+			matches.add(new IntArrayList());
+		}
+		for (int i = 0; i < upper.length; i++) {
+			IntList matched = upper[i];
+			for (int k = 0; k < matched.size(); k++) {
+				int j = matched.getInt(k);
+				matches.get(i).add(j);
+				matches.get(j).add(i);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Repair instances of an imperfection pattern found within a table. The selected
+	 * repairs are combined into a single mapping of each imperfect label to its
+	 * canonical label, then only the rows holding a mapped label are rewritten, in
+	 * one pass, however many repairs were selected
 	 * 
 	 * @param master the original table containing pattern instances
 	 * @return a table of the original data with the repairs done
@@ -89,15 +278,55 @@ public abstract class AbstractImperfectLabel extends AbstractDataPattern {
 	@Override
 	public Table repair(Table master) throws InvalidOptionException {
 		String colName = getSelectedColumnNameValue("Column Name");
-		StringColumn repaired = getSelectedColumn(master, colName);
-		for (Row row : getRepairs()) {
-			repaired = repaired.replaceAll(row.getString("Label2"), row.getString("Label1"));
+		StringColumn column = getSelectedColumn(master, colName);
+		Map<String, String> mapping = getRepairMapping(getRepairs());
+		if (!mapping.isEmpty()) {
+
+			// the selection is made by comparing dictionary codes, not strings
+			Selection rows = column.isIn(mapping.keySet());
+			StringColumn repaired = TableView.writableColumn(master, colName);
+			for (int row : rows) {
+				repaired.set(row, mapping.get(repaired.getString(row)));
+			}
 		}
-		repaired.setName(colName);
-		master.replaceColumn(colName, repaired);
 		return master;
 	}
 
+	/**
+	 * Combines repair rows into a mapping of each imperfect label (Label2) to its
+	 * canonical label (Label1), resolving chains so that if A is repaired to B and
+	 * B to C, A maps directly to C. Where a label is repaired more than once the
+	 * first repair is used, and a repair that would close a cycle is ignored
+	 * 
+	 * @param repairs the repair rows
+	 * @return the mapping of labels to their canonical labels
+	 */
+	protected Map<String, String> getRepairMapping(Table repairs) {
+		Map<String, String> mapping = new HashMap<>();
+		for (Row row : repairs) {
+			String canonical = row.getString("Label1");
+			String imperfect = row.getString("Label2");
+			if (!(imperfect.equals(canonical) || mapping.containsKey(imperfect)
+					|| resolve(mapping, canonical).equals(imperfect))) {
+				mapping.put(imperfect, canonical);
+			}
+		}
+		for (Map.Entry<String, String> entry : mapping.entrySet()) {
+			entry.setValue(resolve(mapping, entry.getValue()));
+		}
+		return mapping;
+	}
+
+	// follows a chain of repairs to its end (the mapping never contains a cycle)
+	private String resolve(Map<String, String> mapping, String label) {
+		String next = mapping.get(label);
+		while (next != null) {
+			label = next;
+			next = mapping.get(label);
+		}
+		return label;
+	}
+
 	/**
 	 * Gets the column specified in the plugins parameters
 	 * 
@@ -129,6 +358,32 @@ public abstract class AbstractImperfectLabel extends AbstractDataPattern {
 				StringColumn.create("Label2"), IntColumn.create("Count2"));
 	}
 
+	/**
+	 * Gets the distinct labels of a column with their frequencies. These are counted
+	 * once per column, and kept until releaseLabelDictionary() is called at the end
+	 * of the detection, so a later detection recounts them even if the column's
+	 * values have been changed in place since
+	 *
+	 * @param column the column from the master table
+	 * @return the distinct labels of the column
+	 */
+	protected LabelDictionary getLabelDictionary(StringColumn column) {
+		if (_labels == null || _labelColumn != column) {
+			_labels = new LabelDictionary(column);
+			_labelColumn = column;
+		}
+		return _labels;
+	}
+
+	/**
+	 * Discards the labels counted by getLabelDictionary(), so that they don't hold
+	 * on to the column between detections
+	 */
+	protected void releaseLabelDictionary() {
+		_labels = null;
+		_labelColumn = null;
+	}
+
 	/**
 	 * Adds a key-value pair to the results table, as well as the frequency of each
 	 * value as contained in the master table
@@ -138,12 +393,29 @@ public abstract class AbstractImperfectLabel extends AbstractDataPattern {
 	 * @param s2     the distorted label
 	 */
 	protected void addResult(StringColumn column, String s1, String s2) {
-		int c1 = column.countOccurrences(s1);
-		int c2 = column.countOccurrences(s2);
-		_detected.stringColumn(0).append(s1);
-		_detected.intColumn(1).append(c1);
-		_detected.stringColumn(2).append(s2);
-		_detected.intColumn(3).append(c2);
+		addResults(column, Collections.singletonList(s1), Collections.singletonList(s2));
+	}
+
+	/**
+	 * Adds a batch of key-value pairs to the results table, as well as the frequency
+	 * of each value as contained in the master table, filling each column in one go
+	 * 
+	 * @param column  the column from the master table to count frequencies
+	 * @param labels1 the labels
+	 * @param labels2 the distorted labels, corresponding to labels1
+	 */
+	protected void addResults(StringColumn column, List<String> labels1, List<String> labels2) {
+		LabelDictionary labels = getLabelDictionary(column);
+		int[] counts1 = new int[labels1.size()];
+		int[] counts2 = new int[labels2.size()];
+		for (int i = 0; i < counts1.length; i++) {
+			counts1[i] = labels.getCount(labels1.get(i));
+			counts2[i] = labels.getCount(labels2.get(i));
+		}
+		_detected.stringColumn(0).addAll(labels1);
+		_detected.intColumn(1).append(IntColumn.create("Count1", counts1));
+		_detected.stringColumn(2).addAll(labels2);
+		_detected.intColumn(3).append(IntColumn.create("Count2", counts2));
 	}
 
 	/**
@@ -22,7 +22,13 @@ import com.processdataquality.praeclarus.option.Options;
 import com.processdataquality.praeclarus.support.activitysimilaritymeasures.*;
 import com.processdataquality.praeclarus.support.logelements.Activity;
 import com.processdataquality.praeclarus.support.logelements.ParseTable;
+import com.processdataquality.praeclarus.support.math.EditDistanceRecursive;
+import com.processdataquality.praeclarus.support.math.MinHashBlocker;
 import com.processdataquality.praeclarus.support.math.Pair;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
+import com.processdataquality.praeclarus.util.TableFingerprint;
+
+import it.unimi.dsi.fastutil.ints.IntList;
 
 import tech.tablesaw.api.IntColumn;
 import tech.tablesaw.api.StringColumn;
@@ -30,6 +36,7 @@ import tech.tablesaw.api.Table;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Overrides base class to add similarity scores
@@ -39,10 +46,14 @@ import java.util.ArrayList;
  */
 public abstract class AbstractImperfectLabelContextual extends AbstractImperfectLabel {
 
-	protected double[][] rs, ds, ts, dcfs, eds, ls;
-	protected double[][] activityContextSimilariy;
-	protected boolean[][] grouped;
+	// indexes of the dimension weights
+	private static final int DURATION = 0, TIME = 1, RESOURCE = 2, CONTROL_FLOW = 3, DATA = 4;
+
+	protected SimilarityMatrix rs, ds, ts, dcfs, eds, ls;
+	protected SimilarityMatrix activityContextSimilariy;
 	protected ParseTable parser;
+	private String _logKey;                   // identifies the log the parser holds
+	private double _groupThreshold;
 
 	protected AbstractImperfectLabelContextual() {
 		super();
@@ -63,24 +74,49 @@ public abstract class AbstractImperfectLabelContextual extends AbstractImperfect
 
 	@Override
 	public Table detect(Table table) throws InvalidOptionException {
-		detect(table, getSelectedColumn(table), getSortColumnName(table));
+		try {
+			detect(table, getSelectedColumn(table), getSortColumnName(table));
+		}
+		finally {
+			releaseLabelDictionary();
+		}
 		return _detected;
 	}
 
 	protected void addSimilarityResults(Table table) throws InvalidOptionException {
 		_detected = createResultTable();
+		double contextThreshold = getOptions().get("Overall Context Similarity Threshold").asDouble();
+		double stringThreshold = getOptions().get("String Similarity Threshold").asDouble();
+		List<String> labels1 = new ArrayList<>();
+		List<String> labels2 = new ArrayList<>();
+		List<int[]> pairs = new ArrayList<>();
 		for (int i = 0; i < parser.getActivities().size(); i++) {
 			for (int j = 0; j < parser.getActivities().size(); j++) {
-				Activity a1 = parser.getActivities().get(i);
-				Activity a2 = parser.getActivities().get(j);
-				if (i != j && activityContextSimilariy[i][j] > getOptions().get("Overall Context Similarity Threshold").asDouble()
-						&& ls[i][j] > getOptions().get("String Similarity Threshold").asDouble()) {
-					addResult(getSelectedColumn(table), a1.getName(), a2.getName(), activityContextSimilariy[i][j],
-							ls[i][j], dcfs[i][j], rs[i][j], ts[i][j], ds[i][j], eds[i][j]);
-
+				if (i != j && activityContextSimilariy.get(i, j) > contextThreshold && ls.get(i, j) > stringThreshold) {
+					labels1.add(parser.getActivities().get(i).getName());
+					labels2.add(parser.getActivities().get(j).getName());
+					pairs.add(new int[] { i, j });
 				}
 			}
 		}
+		addResults(getSelectedColumn(table), labels1, labels2);
+		addSimilarities(pairs);
+	}
+
+	/**
+	 * Fills the similarity columns of the results table for a batch of activity pairs
+	 *
+	 * @param pairs the indexes of each pair of activities
+	 */
+	protected void addSimilarities(List<int[]> pairs) {
+		SimilarityMatrix[] scores = { activityContextSimilariy, ls, dcfs, rs, ts, ds, eds };
+		for (int c = 0; c < scores.length; c++) {
+			List<String> values = new ArrayList<>(pairs.size());
+			for (int[] pair : pairs) {
+				values.add(formatDouble(scores[c].get(pair[0], pair[1])));
+			}
+			_detected.stringColumn(4 + c).addAll(values);
+		}
 	}
 
 	/**
@@ -129,34 +165,106 @@ public abstract class AbstractImperfectLabelContextual extends AbstractImperfect
 	}
 
 	protected void detect(Table table, StringColumn selectedColumn, String sortColName) throws InvalidOptionException {
-		parser = new ParseTable(table, selectedColumn.name(), sortColName);
-		parser.parse();
-		rs = new ResourceSimilarity(parser.getActivities()).getSimilarity();
-		ds = new DurationSimilarity(parser.getActivities()).getSimilarity();
-		ts = new TimeSimilarity(parser.getActivities()).getSimilarity();
-		dcfs = new ControlFlowSimilarity(parser.getActivities(), parser.getTraces(),
-				getOptions().get("Direct Control Flow Noise Threshold").asDouble()).getDirectControlFlowSimilarity();
-		eds = new EventDataSimilarity(parser.getActivities(),
-				getOptions().get("Data Attribute Name Similarity Threshold").asDouble()).getSimilarity();
-		ls = new StringSimilarity(parser.getActivities()).getSimilarity();
-
-		grouped = new boolean[parser.getActivities().size()][parser.getActivities().size()];
-		activityContextSimilariy = new double[parser.getActivities().size()][parser.getActivities().size()];
-		for (int i = 0; i < parser.getActivities().size(); i++) {
-			for (int j = 0; j < parser.getActivities().size(); j++) {
-				if (j > i) {
-					double overS = overallSimilarity(i, j);
-					activityContextSimilariy[i][j] = overS;
-					if (overS > getOptions().get("Overall Context Similarity Threshold").asDouble()) {
-						grouped[i][j] = true;
-					}
-				} else if (j < i) {
-					activityContextSimilariy[i][j] = activityContextSimilariy[j][i];
-				} else {
-					activityContextSimilariy[i][j] = 1;
-				}
-			}
+		String logKey = ContextSimilarityCache.logKey(TableFingerprint.of(table), selectedColumn.name(),
+				sortColName);
+		if (parser == null || !logKey.equals(_logKey) || !canReuseParsedLog()) {
+			parser = new ParseTable(table, selectedColumn.name(), sortColName);
+			parser.parse();
+			_logKey = logKey;
 		}
+
+		// each dimension is keyed by the options it depends on, so changing a weight
+		// or threshold only recombines the cached matrices
+		ArrayList<Activity> activities = parser.getActivities();
+		double[] weights = getDimensionWeights();
+		double noiseThreshold = getOptions().get("Direct Control Flow Noise Threshold").asDouble();
+		double dataNameThreshold = getOptions().get("Data Attribute Name Similarity Threshold").asDouble();
+		dcfs = ContextSimilarityCache.get(logKey, "Control Flow " + noiseThreshold,
+				() -> new ControlFlowSimilarity(activities, parser.getTraces(), noiseThreshold)
+						.getDirectControlFlowSimilarity());
+		rs = isSkipped(weights, RESOURCE) ? notApplicable(activities.size())
+				: ContextSimilarityCache.get(logKey, "Resource",
+						() -> new ResourceSimilarity(activities).getSimilarity());
+		ds = isSkipped(weights, DURATION) ? notApplicable(activities.size())
+				: ContextSimilarityCache.get(logKey, "Duration",
+						() -> new DurationSimilarity(activities).getSimilarity());
+		ts = isSkipped(weights, TIME) ? notApplicable(activities.size())
+				: ContextSimilarityCache.get(logKey, "Time",
+						() -> new TimeSimilarity(activities).getSimilarity());
+		eds = isSkipped(weights, DATA) ? notApplicable(activities.size())
+				: ContextSimilarityCache.get(logKey, "Data " + dataNameThreshold,
+						() -> new EventDataSimilarity(activities, dataNameThreshold).getSimilarity());
+		ls = getStringSimilarity();
+
+		_groupThreshold = getOptions().get("Overall Context Similarity Threshold").asDouble();
+		activityContextSimilariy = SimilarityMatrix.compute(activities.size(), 1,
+				(i, j) -> overallSimilarity(i, j, weights));
+	}
+
+	/**
+	 * The parsed log is kept between runs over the same table and columns. Plugins
+	 * that modify the parsed activities should return false, so that each run
+	 * starts from a fresh parse
+	 *
+	 * @return true if the parsed log may be reused
+	 */
+	protected boolean canReuseParsedLog() {
+		return true;
+	}
+
+	/**
+	 * A dimension with no weight can be left out of the calculation, unless every
+	 * weighted dimension may score -1 for a pair, in which case overallSimilarity
+	 * falls back to weighting all dimensions equally. Control flow always has a
+	 * score, so it must carry some weight.
+	 *
+	 * @param weights   the dimension weights
+	 * @param dimension the index of the dimension
+	 * @return true if the dimension's similarities need not be calculated
+	 */
+	private boolean isSkipped(double[] weights, int dimension) {
+		return weights[dimension] == 0 && weights[CONTROL_FLOW] > 0;
+	}
+
+	// a skipped dimension scores -1 (not applicable) for every pair
+	private SimilarityMatrix notApplicable(int size) {
+		return SimilarityMatrix.constant(size, 1, -1);
+	}
+
+	/**
+	 * @param i the index of one activity
+	 * @param j the index of another activity
+	 * @return true if the overall context similarity of the activities exceeds the
+	 *         threshold. Only pairs where i < j are grouped
+	 */
+	protected boolean isGrouped(int i, int j) {
+		return j > i && activityContextSimilariy.get(i, j) > _groupThreshold;
+	}
+
+	/**
+	 * Calculates the string similarity of each pair of activity labels, or if
+	 * blocking is enabled, of only the candidate pairs (others score 0). Only the
+	 * full calculation is cached, since blocking also re-estimates its recall.
+	 * Blocking affects this dimension alone; the context dimensions are computed
+	 * for every pair, so blocking speeds up the string comparisons only
+	 *
+	 * @return the string similarity matrix
+	 */
+	protected SimilarityMatrix getStringSimilarity() {
+		MinHashBlocker blocker = getBlocker();
+		if (blocker == null) {
+			return ContextSimilarityCache.get(_logKey, "String",
+					() -> new StringSimilarity(parser.getActivities()).getSimilarity());
+		}
+
+		// string similarity ignores case
+		List<String> names = new ArrayList<>();
+		parser.getActivities().forEach(a -> names.add(a.getName().toLowerCase()));
+		IntList[] candidates = blocker.candidates(names);
+		double threshold = getOptions().get("String Similarity Threshold").asDouble();
+		estimateBlockingRecall(blocker, names, candidates,
+				(s1, s2) -> 1 - EditDistanceRecursive.normalizedDistance(s1, s2) > threshold);
+		return new StringSimilarity(parser.getActivities(), candidates).getSimilarity();
 	}
 
 	protected String getSortColumnName(Table table) throws InvalidOptionException {
@@ -177,17 +285,21 @@ public abstract class AbstractImperfectLabelContextual extends AbstractImperfect
 	 */
 
 	protected double overallSimilarity(int i, int j) {
+		return overallSimilarity(i, j, getDimensionWeights());
+	}
+
+	private double overallSimilarity(int i, int j, double[] weights) {
 		double score = 0;
-		double duW = getOptions().get("Duration Similarity Weight").asInt();
-		double tW = getOptions().get("Time Similarity Weight").asInt();
-		double rW = getOptions().get("Resource Similarity Weight").asInt();
-		double dcfW = getOptions().get("Control Flow Similarity Weight").asInt();
-		double edW = getOptions().get("Data Similarity Weight").asInt();
-		double duScore = ds[i][j];
-		double rScore = rs[i][j];
-		double dcfScore = dcfs[i][j];
-		double edScore = eds[i][j];
-		double tScore = ts[i][j];
+		double duW = weights[DURATION];
+		double tW = weights[TIME];
+		double rW = weights[RESOURCE];
+		double dcfW = weights[CONTROL_FLOW];
+		double edW = weights[DATA];
+		double duScore = ds.get(i, j);
+		double rScore = rs.get(i, j);
+		double dcfScore = dcfs.get(i, j);
+		double edScore = eds.get(i, j);
+		double tScore = ts.get(i, j);
 		if (duScore == -1)
 			duW = 0;
 		if (rScore == -1)
@@ -207,6 +319,19 @@ public abstract class AbstractImperfectLabelContextual extends AbstractImperfect
 		return score;
 	}
 
+	/**
+	 * @return the weight of each context dimension, as set in the options
+	 */
+	private double[] getDimensionWeights() {
+		double[] weights = new double[5];
+		weights[DURATION] = getOptions().get("Duration Similarity Weight").asInt();
+		weights[TIME] = getOptions().get("Time Similarity Weight").asInt();
+		weights[RESOURCE] = getOptions().get("Resource Similarity Weight").asInt();
+		weights[CONTROL_FLOW] = getOptions().get("Control Flow Similarity Weight").asInt();
+		weights[DATA] = getOptions().get("Data Similarity Weight").asInt();
+		return weights;
+	}
+
 	/**
 	 * Converts the similarity double score to a string with a well-formatted value.
 	 * 
@@ -199,7 +199,9 @@ public abstract class AbstractPBEARRL extends AbstractAnomalousTrace {
             Table processed = logFragment.select(MASTER_COLS);
 
             // 2. Rename the internal case ID column to the public ANOMALY_CASE_ID_COL ("Case ID")
-            processed.column(CASE_ID_UNLABELED).setName(ANOMALY_CASE_ID_COL);
+            // (a copy, as select() shares its columns with the log)
+            processed.replaceColumn(CASE_ID_UNLABELED,
+                    processed.column(CASE_ID_UNLABELED).copy().setName(ANOMALY_CASE_ID_COL));
 
             // 3. Add the AnomalyPatterns column
             StringColumn anomalyCol = StringColumn.create(ANOMALY_PATTERN_COL);
@@ -35,9 +35,6 @@ import tech.tablesaw.api.Table;
 
 public class DistortedLabelContextual extends AbstractImperfectLabelContextual {
 
-	double[][] rs, ds, ts, dcfs, eds, ls;
-
-
 	public DistortedLabelContextual() {
 		super();
 	}
@@ -53,6 +50,7 @@ public class DistortedLabelContextual extends AbstractImperfectLabelContextual {
 
 		// TODO define limit for each option
 		options.addDefault("String Similarity Threshold", 0.8);
+		addBlockingOptions();
 		options.addDefault("Control Flow Similarity Weight", 1);
 		options.addDefault("Resource Similarity Weight", 1);
 		options.addDefault("Data Similarity Weight", 1);
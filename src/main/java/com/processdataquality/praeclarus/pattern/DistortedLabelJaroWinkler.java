@@ -19,7 +19,6 @@ package com.processdataquality.praeclarus.pattern;
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
 import org.apache.commons.text.similarity.JaroWinklerDistance;
-import tech.tablesaw.api.StringColumn;
 
 /**
  * @author Michael Adams
@@ -39,16 +38,15 @@ public class DistortedLabelJaroWinkler extends AbstractImperfectLabel {
     public DistortedLabelJaroWinkler() {
         super();
         getOptions().addDefault("Threshold", 0.7);
+        addBlockingOptions();
     }
 
 
     @Override
-    protected void detect(StringColumn column, String s1, String s2) {
+    protected boolean isImperfectPair(String s1, String s2) {
         double threshold = getOptions().get("Threshold").asDouble();
         double distance = jaroWinkler.apply(s1, s2);
-        if (distance > threshold && distance < 1.0) {
-            addResult(column, s1, s2);
-        }
+        return distance > threshold && distance < 1.0;
     }
 
 }
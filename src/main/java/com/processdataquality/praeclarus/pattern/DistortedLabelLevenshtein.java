@@ -18,8 +18,13 @@ package com.processdataquality.praeclarus.pattern;
 
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
-import org.apache.commons.text.similarity.LevenshteinDistance;
-import tech.tablesaw.api.StringColumn;
+import com.processdataquality.praeclarus.support.math.BitParallelLevenshtein;
+import com.processdataquality.praeclarus.support.math.LevenshteinIndex;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * @author Michael Adams
@@ -41,13 +46,40 @@ public class DistortedLabelLevenshtein extends AbstractImperfectLabel {
 
 
     @Override
-    protected void detect(StringColumn column, String s1, String s2) {
+    protected boolean isImperfectPair(String s1, String s2) {
         int threshold = getOptions().get("Threshold").asInt();
-        LevenshteinDistance levenshtein = new LevenshteinDistance(threshold);
-        int distance = levenshtein.apply(s1, s2);
-        if (distance > 0 && distance <= levenshtein.getThreshold()) {
-            addResult(column, s1, s2);
-        }
+        return BitParallelLevenshtein.distance(s1, s2, threshold) > 0;     // -1 if over
+    }
+
+
+    /**
+     * Rather than testing every pair of labels, an index of label lengths and
+     * q-grams supplies only the labels that could be within the threshold, which
+     * are then verified with a distance calculation that gives up once the
+     * threshold is exceeded
+     */
+    @Override
+    protected List<IntList> findImperfectPairs(LabelDictionary labels) {
+        int threshold = getOptions().get("Threshold").asInt();
+        BitParallelLevenshtein.Pattern[] patterns = new BitParallelLevenshtein.Pattern[labels.size()];
+        IntStream.range(0, labels.size()).parallel().forEach(
+                i -> patterns[i] = BitParallelLevenshtein.compile(labels.get(i), false));
+        LevenshteinIndex index = new LevenshteinIndex(labels.getLabels(), threshold);
+        IntList[] upper = new IntList[labels.size()];
+        IntStream.range(0, labels.size()).parallel().forEach(i -> {
+            IntList matched = new IntArrayList();
+            IntList candidates = index.candidates(i);
+            for (int k = 0; k < candidates.size(); k++) {
+                int j = candidates.getInt(k);
+
+                // -1 if over the threshold
+                if (patterns[i].distance(patterns[j], threshold) > 0) {
+                    matched.add(j);
+                }
+            }
+            upper[i] = matched;
+        });
+        return symmetricMatches(upper);
     }
 
 }
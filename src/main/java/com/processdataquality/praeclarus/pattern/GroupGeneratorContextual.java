@@ -101,7 +101,7 @@ public class GroupGeneratorContextual extends AbstractImperfectLabelContextual {
 		visited[v] = true;
 		newGroup.add(acts.get(v));
 		for (int i = 0; i < visited.length; i++) {
-			if (grouped[v][i] && !visited[i]) {
+			if (isGrouped(v, i) && !visited[i]) {
 				DFSUtil(i, visited, newGroup, acts);
 			}
 		}
@@ -123,10 +123,10 @@ public class GroupGeneratorContextual extends AbstractImperfectLabelContextual {
 		int counter = 0;
 		for (int i = 0; i < g.getActs().size(); i++) {
 			for (int j = i + 1; j < g.getActs().size(); j++) {		
-				DCFS[counter] =  getSimPercent(dcfs[indices[i]][indices[j]]);
-				RS[counter] = getSimPercent(rs[indices[i]][indices[j]]);		
-				TS[counter] = getTimeAndDurationSimPrecent(ts[indices[i]][indices[j]], ds[indices[i]][indices[j]]);
-				DS[counter] = getSimPercent(eds[indices[i]][indices[j]]);
+				DCFS[counter] =  getSimPercent(dcfs.get(indices[i], indices[j]));
+				RS[counter] = getSimPercent(rs.get(indices[i], indices[j]));		
+				TS[counter] = getTimeAndDurationSimPrecent(ts.get(indices[i], indices[j]), ds.get(indices[i], indices[j]));
+				DS[counter] = getSimPercent(eds.get(indices[i], indices[j]));
 				counter++;
 			}
 		}
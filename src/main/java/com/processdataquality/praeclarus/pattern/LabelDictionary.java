@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.StringColumn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct values of a label column, in order of first appearance, each with
+ * the number of rows it appears in. Built in a single pass over the column, so that
+ * label detectors can work on the (small) vocabulary rather than on every row.
+ * Missing values are not included.
+ */
+public class LabelDictionary {
+
+    private final List<String> _labels = new ArrayList<>();
+    private final Map<String, Integer> _indexes = new HashMap<>();
+    private int[] _counts = new int[16];
+
+
+    public LabelDictionary(StringColumn column) {
+        for (int i = 0; i < column.size(); i++) {
+            if (column.isMissing(i)) continue;
+            String label = column.getString(i);
+            Integer index = _indexes.get(label);
+            if (index == null) {
+                index = _labels.size();
+                _indexes.put(label, index);
+                _labels.add(label);
+                if (index == _counts.length) {
+                    int[] counts = new int[_counts.length * 2];
+                    System.arraycopy(_counts, 0, counts, 0, _counts.length);
+                    _counts = counts;
+                }
+            }
+            _counts[index]++;
+        }
+    }
+
+
+    /** @return the number of distinct labels */
+    public int size() { return _labels.size(); }
+
+
+    /** @return the label with the given index */
+    public String get(int index) { return _labels.get(index); }
+
+
+    /** @return the distinct labels, in order of first appearance */
+    public List<String> getLabels() { return _labels; }
+
+
+    /** @return the index of the label, or -1 if it doesn't appear in the column */
+    public int indexOf(String label) {
+        Integer index = _indexes.get(label);
+        return index != null ? index : -1;
+    }
+
+
+    /** @return the number of rows containing the label with the given index */
+    public int getCount(int index) { return _counts[index]; }
+
+
+    /** @return the number of rows containing the label */
+    public int getCount(String label) {
+        int index = indexOf(label);
+        return index > -1 ? _counts[index] : 0;
+    }
+
+}
@@ -71,7 +71,13 @@ public class MultichoiceQuestionGeneratorContextual extends AbstractImperfectLab
 		this.questionBank = createQuestions(selectedColumn, certainty);
 		getAuxiliaryDatasets().put("Questions", _detected);
 		getAuxiliaryDatasets().put("Activities", createActivitiesTable());
-		
+
+	}
+
+	// question options renumber the activities, so each run needs a fresh parse
+	@Override
+	protected boolean canReuseParsedLog() {
+		return false;
 	}
 
 	private double[] computeCertainties() {
@@ -87,7 +93,7 @@ public class MultichoiceQuestionGeneratorContextual extends AbstractImperfectLab
 	private double getMaxSimTo(int i) {
 		double res = Double.MIN_VALUE;
 		for (int j = 0; j < parser.getActivities().size(); j++) {
-			double sim = activityContextSimilariy[j][i];
+			double sim = activityContextSimilariy.get(j, i);
 			if (sim > res)
 				res = sim;
 		}
@@ -100,7 +106,7 @@ public class MultichoiceQuestionGeneratorContextual extends AbstractImperfectLab
 		double avg = 0;
 		for (int j = 0; j < parser.getActivities().size(); j++) {
 			if (i != j) {
-				double sim = activityContextSimilariy[j][i];
+				double sim = activityContextSimilariy.get(j, i);
 				if (sim != -1) {
 					count++;
 					res += Math.abs(sim - maxsim);
@@ -146,7 +152,7 @@ public class MultichoiceQuestionGeneratorContextual extends AbstractImperfectLab
 				ArrayList<Pair<Double, Integer>> sims = new ArrayList<>();
 				for (int j = 0; j < parser.getActivities().size(); j++) {
 					if (j != selectedIndex) {
-						Pair<Double, Integer> p1 = new Pair<Double, Integer>(activityContextSimilariy[selectedIndex][j], j);
+						Pair<Double, Integer> p1 = new Pair<Double, Integer>(activityContextSimilariy.get(selectedIndex, j), j);
 						sims.add(p1);
 					}
 				}
@@ -236,10 +242,10 @@ public class MultichoiceQuestionGeneratorContextual extends AbstractImperfectLab
 			for (Activity t : all) {
 				int index = parser.getActivities().indexOf(t);
 				if (index != -1) {
-					res[0][iCounter] = getSimPercent(dcfs[mainIndex][index]);
-					res[1][iCounter] = getSimPercent(rs[mainIndex][index]);
-					res[2][iCounter] = getTimeAndDurationSimPrecent(ts[mainIndex][index], ds[mainIndex][index]);			
-					res[3][iCounter] = getSimPercent(eds[mainIndex][index]);
+					res[0][iCounter] = getSimPercent(dcfs.get(mainIndex, index));
+					res[1][iCounter] = getSimPercent(rs.get(mainIndex, index));
+					res[2][iCounter] = getTimeAndDurationSimPrecent(ts.get(mainIndex, index), ds.get(mainIndex, index));			
+					res[3][iCounter] = getSimPercent(eds.get(mainIndex, index));
 					iCounter++;
 				}
 			}
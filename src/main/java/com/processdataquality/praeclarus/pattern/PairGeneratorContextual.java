@@ -76,13 +76,13 @@ public class PairGeneratorContextual extends AbstractImperfectLabelContextual {
 	private ArrayList<ActivityGroup> convertToList() {
 		ArrayList<ActivityGroup> res = new ArrayList<>();
 		int n = 0;
-		for (int i = 0; i < grouped.length; i++) {
-			for (int j = i+1; j < grouped[i].length; j++) {
-				if (grouped[i][j]) {
+		for (int i = 0; i < activityContextSimilariy.size(); i++) {
+			for (int j = i+1; j < activityContextSimilariy.size(); j++) {
+				if (isGrouped(i, j)) {
 					ArrayList<Activity> p = new ArrayList<Activity>();
 					p.add(parser.getActivities().get(i));
 					p.add(parser.getActivities().get(j));
-					ActivityGroup g = new ActivityGroup(n, p, activityContextSimilariy[i][j]);
+					ActivityGroup g = new ActivityGroup(n, p, activityContextSimilariy.get(i, j));
 					n++;
 					res.add(g);
 				}
@@ -114,7 +114,7 @@ public class PairGeneratorContextual extends AbstractImperfectLabelContextual {
 		int j = parser.getActivities().indexOf(g.getActs().get(1));
 		String act1 = "(" + i + ")" + g.getActs().get(0).getName();
 		String act2 = "(" + j + ")" + g.getActs().get(1).getName();
-		addResult(selectedColumn,  g.getId(), act1, act2, dcfs[i][j], rs[i][j], ts[i][j],ds[i][j], eds[i][j]);
+		addResult(selectedColumn,  g.getId(), act1, act2, dcfs.get(i, j), rs.get(i, j), ts.get(i, j), ds.get(i, j), eds.get(i, j));
 
 	}
 
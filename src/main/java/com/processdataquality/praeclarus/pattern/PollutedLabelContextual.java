@@ -48,6 +48,7 @@ public class PollutedLabelContextual extends AbstractImperfectLabelContextual {
 
 		// TODO define limit for each option
 		options.addDefault("String Similarity Threshold", 0.7);
+		addBlockingOptions();
 		options.addDefault("Control Flow Similarity Weight", 1);
 		options.addDefault("Resource Similarity Weight", 1);
 		options.addDefault("Data Similarity Weight", 1);
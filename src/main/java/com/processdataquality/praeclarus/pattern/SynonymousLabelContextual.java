@@ -47,6 +47,7 @@ public class SynonymousLabelContextual extends AbstractImperfectLabelContextual
 
 		// TODO define limit for each option
 		options.addDefault("String Similarity Threshold", 0.5);
+		addBlockingOptions();
 		options.addDefault("Control Flow Similarity Weight", 1);
 		options.addDefault("Resource Similarity Weight", 1);
 		options.addDefault("Data Similarity Weight", 1);
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern.TimestampQuality;
+
+import tech.tablesaw.selection.Selection;
+
+import java.util.Arrays;
+
+/**
+ * Finds duplicate timestamps over primitive arrays: epoch timestamps as a long[],
+ * and traces and activities as int codes (0..n-1), all indexed by row.
+ *
+ * Rows are first put into a sort permutation ordered by timestamp, then trace, then
+ * activity. This is a least-significant-key-first radix sort: a stable counting
+ * sort on activity, then on trace, then 16-bit passes over the timestamps' range.
+ * Each pass reads and writes the permutation sequentially, with no comparisons.
+ * Duplicates are then found in one sweep over the permutation, since equal
+ * timestamps, and within them equal traces and activities, form adjacent runs.
+ */
+public final class DuplicateTimestampKernel {
+
+    private static final int DIGIT_BITS = 16;
+    private static final int DIGIT_MASK = (1 << DIGIT_BITS) - 1;
+
+    private DuplicateTimestampKernel() { }
+
+
+    /**
+     * Sorts a set of rows by timestamp, then trace, then activity
+     * @param rows the rows to sort, in any order; the array is reused as working space
+     * @param count the number of rows, at the start of the array
+     * @param times each row's timestamp
+     * @param traces each row's trace code
+     * @param activities each row's activity code
+     * @return the sorted rows, in an array of length count or more
+     */
+    public static int[] sortIndex(int[] rows, int count, long[] times, int[] traces, int[] activities) {
+        int[] buffer = new int[count];
+        int[] src = rows;
+        int[] dst = buffer;
+        for (int[] codes : new int[][] { activities, traces }) {
+            int keys = maxCode(codes, src, count) + 1;
+            if (keys > 1) {
+                countingSort(src, dst, count, codes, keys);
+                int[] swap = src; src = dst; dst = swap;
+            }
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long time = times[src[i]];
+            if (time < min) min = time;
+            if (time > max) max = time;
+        }
+        long range = max - min;                                 // may wrap, so unsigned
+        int[] counts = new int[DIGIT_MASK + 2];
+        for (int shift = 0; shift < Long.SIZE && (range >>> shift) != 0; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[digit(times[src[i]], min, shift) + 1]++;
+            }
+            for (int d = 1; d < counts.length; d++) {
+                counts[d] += counts[d - 1];
+            }
+            for (int i = 0; i < count; i++) {
+                int row = src[i];
+                dst[counts[digit(times[row], min, shift)]++] = row;
+            }
+            int[] swap = src; src = dst; dst = swap;
+        }
+        return src;
+    }
+
+
+    /**
+     * Finds the duplicate timestamps among sorted rows
+     * @param order rows sorted by sortIndex()
+     * @param count the number of rows
+     * @param times each row's timestamp
+     * @param traces each row's trace code
+     * @param activities each row's activity code
+     * @param inLog receives rows sharing a timestamp with a row of another trace, or
+     *              null if not wanted
+     * @param inTrace receives rows sharing a timestamp with another row of the same
+     *                trace, or null if not wanted
+     * @param inActivity receives rows sharing a timestamp with another row of the
+     *                   same trace and activity, or null if not wanted
+     */
+    public static void findDuplicates(int[] order, int count, long[] times, int[] traces,
+                                      int[] activities, Selection inLog, Selection inTrace,
+                                      Selection inActivity) {
+        int start = 0;
+        while (start < count) {
+            int end = runEnd(order, start, count, times);
+            if (end - start > 1) {
+                if (inLog != null && traces[order[start]] != traces[order[end - 1]]) {
+                    select(inLog, order, start, end);
+                }
+                for (int traceStart = start; traceStart < end; ) {
+                    int traceEnd = runEnd(order, traceStart, end, traces);
+                    if (traceEnd - traceStart > 1) {
+                        if (inTrace != null) select(inTrace, order, traceStart, traceEnd);
+                        for (int actStart = traceStart; inActivity != null && actStart < traceEnd; ) {
+                            int actEnd = runEnd(order, actStart, traceEnd, activities);
+                            if (actEnd - actStart > 1) select(inActivity, order, actStart, actEnd);
+                            actStart = actEnd;
+                        }
+                    }
+                    traceStart = traceEnd;
+                }
+            }
+            start = end;
+        }
+    }
+
+
+    // the end of the run of equal values starting at 'start'
+    private static int runEnd(int[] order, int start, int limit, long[] values) {
+        long value = values[order[start]];
+        int end = start + 1;
+        while (end < limit && values[order[end]] == value) end++;
+        return end;
+    }
+
+
+    private static int runEnd(int[] order, int start, int limit, int[] values) {
+        int value = values[order[start]];
+        int end = start + 1;
+        while (end < limit && values[order[end]] == value) end++;
+        return end;
+    }
+
+
+    private static void countingSort(int[] src, int[] dst, int count, int[] codes, int keys) {
+        int[] counts = new int[keys + 1];
+        for (int i = 0; i < count; i++) {
+            counts[codes[src[i]] + 1]++;
+        }
+        for (int k = 1; k <= keys; k++) {
+            counts[k] += counts[k - 1];
+        }
+        for (int i = 0; i < count; i++) {
+            int row = src[i];
+            dst[counts[codes[row]]++] = row;
+        }
+    }
+
+
+    private static int maxCode(int[] codes, int[] rows, int count) {
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, codes[rows[i]]);
+        }
+        return max;
+    }
+
+
+    private static int digit(long time, long min, int shift) {
+        return (int) (((time - min) >>> shift) & DIGIT_MASK);
+    }
+
+
+    private static void select(Selection selection, int[] order, int start, int end) {
+        for (int i = start; i < end; i++) {
+            selection.add(order[i]);
+        }
+    }
+
+}
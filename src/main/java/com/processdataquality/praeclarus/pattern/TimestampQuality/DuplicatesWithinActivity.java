@@ -20,8 +20,7 @@ import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
 import com.processdataquality.praeclarus.option.ColumnNameListOption;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
-import tech.tablesaw.api.Row;
-import tech.tablesaw.api.Table;
+
 import tech.tablesaw.selection.Selection;
 
 /**
@@ -43,41 +42,7 @@ public class DuplicatesWithinActivity extends TimestampPattern {
     }
 
     @Override
-    public void createErrorTableModel(Table table) {
-        setErrorTable(table.emptyCopy());
-    }
-
-    @Override
-    public void detectErrors(Table table) {
-        Selection emptyTimestamps = Selection.with();
-        for (Row row : table) {
-            if (row.getDateTime(getSelectedColumnNameValue("Timestamp Column")) == null) {
-                emptyTimestamps.add(row.getRowNumber());
-            }
-        }
-        table.dropRows(emptyTimestamps.toArray());
-        table = table.sortOn(getSelectedColumnNameValue("Trace Column"), getSelectedColumnNameValue("Activity Column"),
-        getSelectedColumnNameValue("Timestamp Column"));
-        boolean prevEventDetected = false;
-        for (Row row : table) {
-            if (row.getRowNumber() != 0 && table.row(row.getRowNumber())
-            .getString(getSelectedColumnNameValue("Activity Column")).equals(table.row(row.getRowNumber() - 1)
-            .getString(getSelectedColumnNameValue("Activity Column"))) && table.row(row.getRowNumber())
-            .getDateTime(getSelectedColumnNameValue("Timestamp Column")) == table.row(row.getRowNumber() - 1)
-           .getDateTime(getSelectedColumnNameValue("Timestamp Column")) && table.row(row.getRowNumber())
-            .getString(getSelectedColumnNameValue("Trace Column")).equals(table.row(row.getRowNumber() - 1)
-            .getString(getSelectedColumnNameValue("Trace Column")))) {
-                _detected.append(row);
-                if (!prevEventDetected) {
-                    _detected.append(table.row(row.getRowNumber()-1));
-                } 
-                prevEventDetected = true;
-            }
-            else {
-                prevEventDetected = false;
-            }
-        }
+    protected Selection selectErrors(TimestampQualityEngine.Report report) {
+        return report.getDuplicatesInActivity();
     }
 }
-
-//
\ No newline at end of file
@@ -16,15 +16,11 @@
 
 package com.processdataquality.praeclarus.pattern.TimestampQuality;
 
-import java.util.HashSet;
-
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
 import com.processdataquality.praeclarus.option.ColumnNameListOption;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
 
-import tech.tablesaw.api.Row;
-import tech.tablesaw.api.Table;
 import tech.tablesaw.selection.Selection;
 
 /**
@@ -45,46 +41,7 @@ public class DuplicatesWithinLog extends TimestampPattern {
 	}
 
 	@Override
-	public void createErrorTableModel(Table table) {
-		setErrorTable(table.emptyCopy());
-	}
-
-	@Override
-	public void detectErrors(Table table) {
-		Selection emptyTimestamps = Selection.with();
-		for (Row row : table) {
-			if (row.getDateTime(getSelectedColumnNameValue("Timestamp Column")) == null) {
-				emptyTimestamps.add(row.getRowNumber());
-			}
-		}
-		table.dropRows(emptyTimestamps.toArray());
-		table = table.sortOn(getSelectedColumnNameValue("Timestamp Column"));
-		Table errorCache = table.emptyCopy();
-		boolean prevEventDetected = false;
-		for (Row row : table) {
-			if (row.getRowNumber() != 0 && table.row(row.getRowNumber())
-					.getDateTime(getSelectedColumnNameValue("Timestamp Column")) == table.row(row.getRowNumber() - 1)
-							.getDateTime(getSelectedColumnNameValue("Timestamp Column"))) {
-				errorCache.append(row);
-				if (!prevEventDetected) {
-					errorCache.append(table.row(row.getRowNumber() - 1));
-				}
-				prevEventDetected = true;
-			} else {
-				prevEventDetected = false;
-			}
-			if (row.getRowNumber() == table.rowCount() - 1 || table.row(row.getRowNumber())
-					.getDateTime(getSelectedColumnNameValue("Timestamp Column")) == table.row(row.getRowNumber() + 1)
-							.getDateTime(getSelectedColumnNameValue("Timestamp Column"))) {
-				HashSet<String> traceCache = new HashSet<>();
-				for (Row row2 : errorCache) {
-					traceCache.add(row2.getString(getSelectedColumnNameValue("Trace Column")));
-				}
-				if (traceCache.size() > 1) {
-					_detected.append(errorCache);
-				}
-				errorCache.clear();
-			}
-		}
+	protected Selection selectErrors(TimestampQualityEngine.Report report) {
+		return report.getDuplicatesInLog();
 	}
-}
\ No newline at end of file
+}
@@ -19,12 +19,8 @@ package com.processdataquality.praeclarus.pattern.TimestampQuality;
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
 import com.processdataquality.praeclarus.option.ColumnNameListOption;
-import com.processdataquality.praeclarus.option.Options;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
-import com.processdataquality.praeclarus.plugin.uitemplate.PluginUI;
 
-import tech.tablesaw.api.Row;
-import tech.tablesaw.api.Table;
 import tech.tablesaw.selection.Selection;
 
 /**
@@ -39,49 +35,13 @@ import tech.tablesaw.selection.Selection;
 
 public class DuplicatesWithinTrace extends TimestampPattern {
 
-    protected PluginUI _ui;
-    protected Options options;
-    protected Table _detected;
-
     public DuplicatesWithinTrace() {
         super();
         getOptions().addDefault(new ColumnNameListOption("Trace Column"));
     }
 
     @Override
-    public void createErrorTableModel(Table table) {
-        setErrorTable(table.emptyCopy());
-    }
-
-    @Override
-    public void detectErrors(Table table) {
-        Selection emptyTimestamps = Selection.with();
-        for (Row row : table) {
-            if (row.getDateTime(getSelectedColumnNameValue("Timestamp Column")) == null) {
-                emptyTimestamps.add(row.getRowNumber());
-            }
-        }
-        table.dropRows(emptyTimestamps.toArray());
-        table = table.sortOn(getSelectedColumnNameValue("Trace Column"), 
-        getSelectedColumnNameValue("Timestamp Column"));
-		boolean prevEventDetected = false;
-		for (Row row : table) {
-			if (row.getRowNumber() != 0 && table.row(row.getRowNumber())
-            .getDateTime(getSelectedColumnNameValue("Timestamp Column")) == table.row(row.getRowNumber() - 1)
-           .getDateTime(getSelectedColumnNameValue("Timestamp Column")) && table.row(row.getRowNumber())
-            .getString(getSelectedColumnNameValue("Trace Column")).equals(table.row(row.getRowNumber() - 1)
-            .getString(getSelectedColumnNameValue("Trace Column")))) {
-				_detected.append(row);
-				if (!prevEventDetected) {
-                    _detected.append(table.row(row.getRowNumber()-1));
-                } 
-                prevEventDetected = true;
-			}
-            else {
-                prevEventDetected = false;
-            }
-		}
+    protected Selection selectErrors(TimestampQualityEngine.Report report) {
+        return report.getDuplicatesInTrace();
     }
 }
-
-//
\ No newline at end of file
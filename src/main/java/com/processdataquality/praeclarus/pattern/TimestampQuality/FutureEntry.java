@@ -16,16 +16,11 @@
 
 package com.processdataquality.praeclarus.pattern.TimestampQuality;
 
-import java.time.LocalDateTime;
-
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
-import com.processdataquality.praeclarus.exception.OptionException;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
 
-import tech.tablesaw.api.DateTimeColumn;
-import tech.tablesaw.api.Row;
-import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.Selection;
 
 /**
  * A base class for imperfect label plugins
@@ -46,21 +41,7 @@ public class FutureEntry extends TimestampPattern {
     }
 
     @Override
-    public void createErrorTableModel(Table table) {
-        setErrorTable(table.emptyCopy());
-    }
-
-    protected void detect(Table table, DateTimeColumn selectedColumn) throws OptionException {
-        LocalDateTime d = LocalDateTime.now();
-        for (Row row : table) {
-            LocalDateTime testValue = row.getDateTime(getSelectedColumnNameValue("Timestamp Column"));
-            if (testValue != null) {
-                if (testValue.isAfter(d)) {
-                    _detected.append(row);
-                }
-            }
-        }
+    protected Selection selectErrors(TimestampQualityEngine.Report report) {
+        return report.getFuture();
     }
 }
-
-// 
\ No newline at end of file
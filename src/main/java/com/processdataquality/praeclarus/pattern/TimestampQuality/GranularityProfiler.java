@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern.TimestampQuality;
+
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
+
+/**
+ * Profiles the granularity with which a log's timestamps were recorded. The
+ * effective granularity of a timestamp is the coarsest unit (day, hour, minute,
+ * second, millisecond, microsecond) that it is a whole multiple of, so e.g. a
+ * timestamp of 10:30:00.000 has minute granularity.
+ *
+ * One pass over the epoch timestamps builds a histogram of granularities for each
+ * activity and each resource. Each activity's dominant granularity is its most
+ * frequent one, and events recorded more coarsely than the dominant granularity of
+ * their activity are flagged as imprecise. Works on the same primitive arrays as
+ * DuplicateTimestampKernel: epoch nanoseconds and int codes, indexed by row.
+ */
+public class GranularityProfiler {
+
+    /**
+     * The units of granularity, finest first
+     */
+    public enum Granularity {
+        MICROSECOND("\u00b5s", 1_000L),
+        MILLISECOND("ms", 1_000_000L),
+        SECOND("Second", 1_000_000_000L),
+        MINUTE("Minute", 60_000_000_000L),
+        HOUR("Hour", 3_600_000_000_000L),
+        DAY("Day", 86_400_000_000_000L);
+
+        private final String _label;
+        private final long _nanos;
+
+        Granularity(String label, long nanos) {
+            _label = label;
+            _nanos = nanos;
+        }
+
+        public String getLabel() { return _label; }
+    }
+
+    private static final Granularity[] UNITS = Granularity.values();
+    private static final int UNIT_COUNT = UNITS.length;
+
+    private final int[] _activities;
+    private final String[] _activityNames;
+    private final int[] _resources;
+    private final String[] _resourceNames;
+
+
+    /**
+     * @param activities each row's activity code
+     * @param activityNames the activity of each code; if empty, all rows are taken
+     *                      as one activity
+     * @param resources each row's resource code
+     * @param resourceNames the resource of each code; if empty, there is no
+     *                      resource profile
+     */
+    public GranularityProfiler(int[] activities, String[] activityNames, int[] resources,
+                               String[] resourceNames) {
+        _activities = activities;
+        _activityNames = activityNames;
+        _resources = resources;
+        _resourceNames = resourceNames;
+    }
+
+
+    /**
+     * @param epochNanos a timestamp, as nanoseconds since the epoch
+     * @return the coarsest unit the timestamp is a whole multiple of. Timestamps
+     * finer than a microsecond are taken as microsecond
+     */
+    public static Granularity granularity(long epochNanos) {
+        int unit = 0;
+        while (unit + 1 < UNIT_COUNT && Math.floorMod(epochNanos, UNITS[unit + 1]._nanos) == 0) {
+            unit++;
+        }
+        return UNITS[unit];
+    }
+
+
+    /**
+     * Profiles a set of rows
+     * @param times each row's timestamp
+     * @param rows the rows to profile, i.e. those that have a timestamp
+     * @param count the number of rows, at the start of the array
+     * @return the profile
+     */
+    public Profile profile(long[] times, int[] rows, int count) {
+        int activityCount = Math.max(1, _activityNames.length);
+        int[] byActivity = new int[activityCount * UNIT_COUNT];
+        int[] byResource = new int[_resourceNames.length * UNIT_COUNT];
+        byte[] units = new byte[count];
+        boolean profileResources = byResource.length > 0;
+
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            int unit = granularity(times[row]).ordinal();
+            units[i] = (byte) unit;
+            byActivity[_activities[row] * UNIT_COUNT + unit]++;
+            if (profileResources) {
+                byResource[_resources[row] * UNIT_COUNT + unit]++;
+            }
+        }
+
+        byte[] dominant = new byte[activityCount];
+        for (int activity = 0; activity < activityCount; activity++) {
+            dominant[activity] = (byte) dominantUnit(byActivity, activity);
+        }
+
+        Selection coarser = new BitmapBackedSelection();
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (units[i] > dominant[_activities[row]]) {
+                coarser.add(row);
+            }
+        }
+        return new Profile(byActivity, byResource, dominant, coarser);
+    }
+
+
+    // the most frequent unit in a histogram row; the finest of any tied
+    private static int dominantUnit(int[] histogram, int index) {
+        int base = index * UNIT_COUNT;
+        int dominant = 0;
+        for (int unit = 1; unit < UNIT_COUNT; unit++) {
+            if (histogram[base + unit] > histogram[base + dominant]) {
+                dominant = unit;
+            }
+        }
+        return dominant;
+    }
+
+
+    /**
+     * The granularity histograms of a log, and the events coarser than the dominant
+     * granularity of their activity
+     */
+    public class Profile {
+        private final int[] _byActivity;
+        private final int[] _byResource;
+        private final byte[] _dominant;
+        private final Selection _coarser;
+
+        private Profile(int[] byActivity, int[] byResource, byte[] dominant, Selection coarser) {
+            _byActivity = byActivity;
+            _byResource = byResource;
+            _dominant = dominant;
+            _coarser = coarser;
+        }
+
+        /** @return the rows recorded more coarsely than their activity's dominant granularity */
+        public Selection getCoarser() { return _coarser; }
+
+        /**
+         * @param activity an activity code
+         * @return the most frequent granularity of the activity's timestamps
+         */
+        public Granularity getDominant(int activity) { return UNITS[_dominant[activity]]; }
+
+
+        /**
+         * Summarises the profile, with a row for each activity and each resource
+         * giving its number of timestamps at each granularity, its dominant
+         * granularity and its number of timestamps coarser than that. Only the
+         * coarser timestamps of activities are flagged as imprecise
+         * @return the summary table
+         */
+        public Table toTable() {
+            Table table = Table.create("Granularity Profile").addColumns(
+                    StringColumn.create("Attribute"), StringColumn.create("Value"));
+            for (Granularity unit : UNITS) {
+                table.addColumns(IntColumn.create(unit.getLabel()));
+            }
+            table.addColumns(StringColumn.create("Dominant"), IntColumn.create("Coarser"));
+
+            for (int activity = 0; activity < _dominant.length; activity++) {
+                String name = _activityNames.length > 0 ? _activityNames[activity] : "(all)";
+                addRow(table, "Activity", name, _byActivity, activity);
+            }
+            for (int resource = 0; resource < _resourceNames.length; resource++) {
+                addRow(table, "Resource", _resourceNames[resource], _byResource, resource);
+            }
+            return table;
+        }
+
+
+        private void addRow(Table table, String attribute, String value, int[] histogram,
+                            int index) {
+            int dominant = dominantUnit(histogram, index);
+            int coarser = 0;
+            table.stringColumn(0).append(attribute);
+            table.stringColumn(1).append(value);
+            for (int unit = 0; unit < UNIT_COUNT; unit++) {
+                int events = histogram[index * UNIT_COUNT + unit];
+                table.intColumn(2 + unit).append(events);
+                if (unit > dominant) coarser += events;
+            }
+            table.stringColumn(2 + UNIT_COUNT).append(UNITS[dominant].getLabel());
+            table.intColumn(3 + UNIT_COUNT).append(coarser);
+        }
+    }
+
+}
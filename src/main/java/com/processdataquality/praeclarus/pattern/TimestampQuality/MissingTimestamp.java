@@ -16,14 +16,11 @@
 
 package com.processdataquality.praeclarus.pattern.TimestampQuality;
 
-import java.time.LocalDateTime;
-
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
 
-import tech.tablesaw.api.Row;
-import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.Selection;
 
 /**
  * A base class for imperfect label plugins
@@ -44,19 +41,7 @@ public class MissingTimestamp extends TimestampPattern {
     }
 
     @Override
-    public void createErrorTableModel(Table table) {
-        setErrorTable(table.emptyCopy());
-    }
-
-    @Override
-    public void detectErrors(Table table) {
-        for (Row row : table) {
-            LocalDateTime testValue = row.getDateTime(getSelectedColumnNameValue("Timestamp Column"));
-            if (testValue == null) {
-                _detected.append(row);
-            }
-        }
+    protected Selection selectErrors(TimestampQualityEngine.Report report) {
+        return report.getMissing();
     }
 }
-
-// 
\ No newline at end of file
@@ -16,19 +16,20 @@
 
 package com.processdataquality.praeclarus.pattern.TimestampQuality;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-
 import com.processdataquality.praeclarus.annotation.Pattern;
 import com.processdataquality.praeclarus.annotation.Plugin;
+import com.processdataquality.praeclarus.option.ColumnNameListOption;
 import com.processdataquality.praeclarus.pattern.PatternGroup;
 
-import tech.tablesaw.api.Row;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.Selection;
 
 /**
- * A base class for imperfect label plugins
+ * Detects timestamps recorded more coarsely than is usual for their activity, e.g.
+ * a timestamp to the minute among an activity's timestamps to the millisecond. The
+ * granularity profile of the log, by activity and resource, is also made available
+ * as an auxiliary dataset. The resource column is optional: with none selected, the
+ * profile has no resource breakdown
  * @author Dominik Fischer
  * @date 19/08/22
  */
@@ -36,33 +37,26 @@ import tech.tablesaw.api.Table;
 @Plugin(name = "Precision",
         author = "Dominik Fischer",
         version = "1.0",
-        synopsis = "Detects future entries")
+        synopsis = "Detects timestamps coarser than the usual granularity of their activity")
 @Pattern(group = PatternGroup.UNGROUPED)
 
 public class Precision extends TimestampPattern {
 
     public Precision() {
         super();
+        getOptions().addDefault(new ColumnNameListOption("Activity Column"));
+        getOptions().addDefault(new ColumnNameListOption("Resource Column", true));
     }
 
-
-    public void createErrorTableModel(Table table) {
-        setErrorTable(table.emptyCopy());
+    @Override
+    public void apply(Table table, TimestampQualityEngine.Report report) {
+        super.apply(table, report);
+        getAuxiliaryDatasets().put("Granularity Profile",
+                report.getGranularityProfile().toTable());
     }
 
-    public void detectErrors(Table table) {
-        for (Row row : table) {
-            LocalDateTime testValue = row.getDateTime(getSelectedColumnNameValue("Column name"));
-            if (testValue != null) {
-                ZonedDateTime zdt = ZonedDateTime.of(testValue, ZoneId.systemDefault());
-                long testValue2 = zdt.toInstant().toEpochMilli();
-                testValue2 = Math.abs(testValue2%1000);
-                if (testValue2 == 0) {
-                    _detected.append(row);
-                }
-            }
-        }
+    @Override
+    protected Selection selectErrors(TimestampQualityEngine.Report report) {
+        return report.getImprecise();
     }
 }
-
-// 
\ No newline at end of file
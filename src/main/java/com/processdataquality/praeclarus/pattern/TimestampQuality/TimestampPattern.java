@@ -24,12 +24,14 @@ import javax.swing.table.DefaultTableModel;
 import com.processdataquality.praeclarus.exception.InvalidOptionException;
 import com.processdataquality.praeclarus.exception.OptionException;
 import com.processdataquality.praeclarus.option.ColumnNameListOption;
+import com.processdataquality.praeclarus.option.Option;
 import com.processdataquality.praeclarus.option.Options;
 import com.processdataquality.praeclarus.pattern.AbstractDataPattern;
 import com.processdataquality.praeclarus.plugin.uitemplate.PluginUI;
 
 import tech.tablesaw.api.DateTimeColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.selection.Selection;
 
 /**
  * A base class for imperfect label plugins
@@ -53,6 +55,7 @@ public abstract class TimestampPattern extends AbstractDataPattern {
 	private int scoreWeight = 1;
 	private boolean used = true;
 	private double relativeWeight = 1;
+	private int rowCount;
 	protected Table _detected;
 
     protected TimestampPattern() {
@@ -92,14 +95,50 @@ public abstract class TimestampPattern extends AbstractDataPattern {
 		// TODO Auto-generated method stub
 	}
 
+	/**
+	 * Scores the metric as the fraction of rows free of its errors
+	 */
 	public void calculateScore() {
-		// TODO Auto-generated method stub
-		
+		setScore(rowCount == 0 ? 1 : 1 - (double) _detected.rowCount() / rowCount);
 	}
 
 	public void detectErrors(Table table) {
-		// TODO Auto-generated method stub
-		
+		apply(table, createEngine(table).getReport());
+	}
+
+	/**
+	 * Takes this metric's errors from a timestamp quality assessment of a table, and
+	 * scores them
+	 * @param table the assessed table
+	 * @param report the assessment
+	 */
+	public void apply(Table table, TimestampQualityEngine.Report report) {
+		_detected = table.where(selectErrors(report));
+		rowCount = report.getRowCount();
+		calculateScore();
+	}
+
+	/**
+	 * @param report a timestamp quality assessment
+	 * @return the rows that are errors for this metric
+	 */
+	protected abstract Selection selectErrors(TimestampQualityEngine.Report report);
+
+	/**
+	 * @param table the table to assess
+	 * @return an engine over the columns selected in this metric's options
+	 */
+	protected TimestampQualityEngine createEngine(Table table) {
+		return new TimestampQualityEngine(table, getSelectedColumnNameValue("Timestamp Column"),
+				getOptionalColumnName("Trace Column"), getOptionalColumnName("Activity Column"),
+				getOptionalColumnName("Resource Column"));
+	}
+
+	// the column selected in an option, or null if this metric doesn't have the option
+	// or none is selected
+	private String getOptionalColumnName(String name) {
+		Option option = getOptions().get(name);
+		return option != null ? ((ColumnNameListOption) option).getSelectedColumnName() : null;
 	}
 
 	public void calculateDimensionScore(List<TimestampPattern> metricsList) {
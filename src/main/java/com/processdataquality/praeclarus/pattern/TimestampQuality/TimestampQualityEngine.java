@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern.TimestampQuality;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Assesses every timestamp quality metric of a log in one go. The timestamp, trace
+ * and activity columns are read once into primitive arrays, the rows with a
+ * timestamp are sorted once (by timestamp, then trace, then activity, through
+ * DuplicateTimestampKernel), and a single pass over the sorted rows finds the
+ * duplicate timestamps within the log, a trace or an activity. Missing and future
+ * timestamps are found while the columns are read, and imprecise timestamps by a
+ * GranularityProfiler over the same arrays.
+ *
+ * Each TimestampPattern takes its errors from the engine's Report. Patterns over
+ * the same columns share one recent report (see getReport()), so the metrics of a
+ * dimension cost one scan and at most one sort however many there are, and a
+ * metric that needs neither the duplicates nor the granularity profile never
+ * sorts.
+ */
+public class TimestampQualityEngine {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MAX_REPORT_AGE = 60 * NANOS_PER_SECOND;
+
+    // recent reports, by the column of timestamps they were made from
+    private static final Map<Column<?>, List<SharedReport>> REPORTS = new WeakHashMap<>();
+
+    private final Table _table;
+    private final String _timestampColumn;
+    private final String _traceColumn;
+    private final String _activityColumn;
+    private final String _resourceColumn;
+
+
+    /**
+     * @param table the log
+     * @param timestampColumn the name of the timestamp column
+     * @param traceColumn the name of the trace (case id) column, or null if there
+     *                    is none; duplicates within the log need one
+     * @param activityColumn the name of the activity column, or null if there is none
+     */
+    public TimestampQualityEngine(Table table, String timestampColumn, String traceColumn,
+                                  String activityColumn) {
+        this(table, timestampColumn, traceColumn, activityColumn, null);
+    }
+
+
+    /**
+     * @param table the log
+     * @param timestampColumn the name of the timestamp column
+     * @param traceColumn the name of the trace (case id) column, or null if there
+     *                    is none; duplicates within the log need one
+     * @param activityColumn the name of the activity column, or null if there is none
+     * @param resourceColumn the name of the resource column, or null if there is
+     *                       none; only used to profile timestamp granularity
+     */
+    public TimestampQualityEngine(Table table, String timestampColumn, String traceColumn,
+                                  String activityColumn, String resourceColumn) {
+        _table = table;
+        _timestampColumn = timestampColumn;
+        _traceColumn = traceColumn;
+        _activityColumn = activityColumn;
+        _resourceColumn = resourceColumn;
+    }
+
+
+    /**
+     * Finds the errors of every metric and applies them to each of a list of
+     * timestamp patterns, which each calculate their score. The dimension score can
+     * then be had from calculateDimensionScore()
+     * @param metrics the timestamp patterns to assess
+     * @return the errors found
+     */
+    public Report assess(List<TimestampPattern> metrics) {
+        Report report = getReport();
+        for (TimestampPattern metric : metrics) {
+            metric.apply(_table, report);
+        }
+        return report;
+    }
+
+
+    /**
+     * Gets the errors of every metric, reusing a recent report on the same columns
+     * if there is one. Views of a table share its column objects (see TableView),
+     * so the metrics of a dimension, each given its own view of the same log, share
+     * one report, while a column changed in place through TableView.writableColumn
+     * is a new object and is assessed afresh. Reports are reused for up to a minute,
+     * so that the future entries found stay current
+     * @return the errors found
+     */
+    public Report getReport() {
+        Column<?>[] columns = { _table.column(_timestampColumn), column(_traceColumn),
+                column(_activityColumn), column(_resourceColumn) };
+        long now = System.nanoTime();
+        synchronized (REPORTS) {
+            List<SharedReport> shared = REPORTS.get(columns[0]);
+            if (shared != null) {
+                shared.removeIf(entry -> now - entry.created > MAX_REPORT_AGE);
+                for (SharedReport entry : shared) {
+                    if (entry.matches(columns, _traceColumn != null)) return entry.report;
+                }
+            }
+        }
+        Report report = run();
+        synchronized (REPORTS) {
+            REPORTS.computeIfAbsent(columns[0], c -> new ArrayList<>())
+                    .add(new SharedReport(columns, report, now));
+        }
+        return report;
+    }
+
+
+    /**
+     * Finds the errors of every metric. Missing and future timestamps are found
+     * here; the granularity profile and the duplicates are found when first asked
+     * for, so a metric that needs neither doesn't pay for the sort
+     * @return the errors found
+     */
+    public Report run() {
+        int size = _table.rowCount();
+        DateTimeColumn timestamps = _table.dateTimeColumn(_timestampColumn);
+        long now = toEpochNanos(LocalDateTime.now());
+        Report report = new Report(size, column(_traceColumn), column(_activityColumn),
+                column(_resourceColumn), _traceColumn != null);
+
+        // one scan for the per-row metrics, gathering the rows that have a timestamp
+        long[] times = new long[size];
+        int[] order = new int[size];
+        int present = 0;
+        for (int row = 0; row < size; row++) {
+            if (timestamps.isMissing(row)) {
+                report.missing.add(row);
+                continue;
+            }
+            long time = toEpochNanos(timestamps.get(row));
+            times[row] = time;
+            order[present++] = row;
+            if (time > now) {
+                report.future.add(row);
+            }
+        }
+        report.times = times;
+        report.order = order;
+        report.present = present;
+        return report;
+    }
+
+
+    /**
+     * @return a local date-time as nanoseconds since the epoch, taking the local
+     * time as UTC. Only the ordering and wall-clock fields of timestamps are of
+     * interest here, so no time zone conversion is needed. Date-times outside the
+     * range of a long (before 1677 or after 2262) are clamped to its ends, so they
+     * still order correctly against, and are found later than, any in range
+     */
+    static long toEpochNanos(LocalDateTime dt) {
+        long seconds = dt.toEpochSecond(ZoneOffset.UTC);
+        try {
+            return Math.addExact(Math.multiplyExact(seconds, NANOS_PER_SECOND), dt.getNano());
+        }
+        catch (ArithmeticException e) {
+            return seconds < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+
+    // the named column, or null if there's no such column
+    private Column<?> column(String columnName) {
+        if (columnName == null || !_table.columnNames().contains(columnName)) return null;
+        return _table.column(columnName);
+    }
+
+
+    // the values of a column interned as int codes, or all zeros if there's no column.
+    // The value of each code is added to 'names'
+    private static int[] codes(Column<?> column, int size, List<String> names) {
+        int[] codes = new int[size];
+        if (column == null) return codes;
+        Object2IntOpenHashMap<String> index = new Object2IntOpenHashMap<>();
+        index.defaultReturnValue(-1);
+        for (int row = 0; row < size; row++) {
+            String value = column.getString(row);
+            int code = index.getInt(value);
+            if (code == -1) {
+                code = index.size();
+                index.put(value, code);
+                names.add(value);
+            }
+            codes[row] = code;
+        }
+        return codes;
+    }
+
+
+    /**
+     * The rows in error for each metric, by their index in the assessed table
+     */
+    public static class Report {
+        private final int rowCount;
+        private final Selection missing = new BitmapBackedSelection();
+        private final Selection future = new BitmapBackedSelection();
+
+        // the scan's results, kept for the profile and the duplicates
+        private long[] times;
+        private int[] order;                 // the rows with a timestamp, in any order
+        private int present;
+        private Column<?> traceColumn;
+        private Column<?> activityColumn;
+        private Column<?> resourceColumn;
+        private final boolean logDuplicates;
+
+        private GranularityProfiler.Profile granularityProfile;
+        private Selection duplicatesInLog;
+        private Selection duplicatesInTrace;
+        private Selection duplicatesInActivity;
+        private int[] activities;
+        private List<String> activityNames;
+
+        Report(int rowCount, Column<?> traceColumn, Column<?> activityColumn,
+               Column<?> resourceColumn, boolean logDuplicates) {
+            this.rowCount = rowCount;
+            this.traceColumn = traceColumn;
+            this.activityColumn = activityColumn;
+            this.resourceColumn = resourceColumn;
+            this.logDuplicates = logDuplicates;
+        }
+
+        public int getRowCount() { return rowCount; }
+
+        /** @return rows without a timestamp */
+        public Selection getMissing() { return missing; }
+
+        /** @return rows timestamped after the assessment was run */
+        public Selection getFuture() { return future; }
+
+        /** @return rows whose timestamps are coarser than their activity's usual granularity */
+        public Selection getImprecise() { return getGranularityProfile().getCoarser(); }
+
+        /** @return the granularity of the timestamps, by activity and resource */
+        public synchronized GranularityProfiler.Profile getGranularityProfile() {
+            if (granularityProfile == null) {
+                int[] activityCodes = activityCodes();
+                List<String> resourceNames = new ArrayList<>();
+                int[] resources = codes(resourceColumn, rowCount, resourceNames);
+                granularityProfile = new GranularityProfiler(activityCodes,
+                        activityNames.toArray(new String[0]), resources,
+                        resourceNames.toArray(new String[0])).profile(times, order, present);
+                resourceColumn = null;
+                release();
+            }
+            return granularityProfile;
+        }
+
+        /** @return rows sharing a timestamp with a row of another trace */
+        public Selection getDuplicatesInLog() {
+            findDuplicates();
+            return duplicatesInLog;
+        }
+
+        /** @return rows sharing a timestamp with another row of the same trace */
+        public Selection getDuplicatesInTrace() {
+            findDuplicates();
+            return duplicatesInTrace;
+        }
+
+        /** @return rows sharing a timestamp with another row of the same trace and activity */
+        public Selection getDuplicatesInActivity() {
+            findDuplicates();
+            return duplicatesInActivity;
+        }
+
+
+        // one sort and one pass find all three kinds of duplicate
+        private synchronized void findDuplicates() {
+            if (duplicatesInTrace != null) return;
+            duplicatesInLog = new BitmapBackedSelection();
+            duplicatesInTrace = new BitmapBackedSelection();
+            duplicatesInActivity = new BitmapBackedSelection();
+            int[] traces = codes(traceColumn, rowCount, new ArrayList<>());
+            int[] activityCodes = activityCodes();
+
+            // sortIndex works in 'order', but leaves it holding the same rows, so
+            // the profile can still be taken from it
+            int[] sorted = DuplicateTimestampKernel.sortIndex(order, present, times, traces,
+                    activityCodes);
+            DuplicateTimestampKernel.findDuplicates(sorted, present, times, traces, activityCodes,
+                    logDuplicates ? duplicatesInLog : null, duplicatesInTrace,
+                    duplicatesInActivity);
+            traceColumn = null;
+            release();
+        }
+
+
+        // the activity codes, shared by the profile and the duplicates
+        private int[] activityCodes() {
+            if (activities == null) {
+                activityNames = new ArrayList<>();
+                activities = codes(activityColumn, rowCount, activityNames);
+            }
+            return activities;
+        }
+
+
+        // drops the scan's results once both the profile and the duplicates are found
+        private void release() {
+            if (granularityProfile != null && duplicatesInTrace != null) {
+                times = null;
+                order = null;
+                activities = null;
+                activityNames = null;
+                activityColumn = null;
+            }
+        }
+    }
+
+
+    // a report, with the columns it was made from
+    private static class SharedReport {
+        private final List<WeakReference<Column<?>>> columns = new ArrayList<>();
+        private final Report report;
+        private final long created;
+
+        SharedReport(Column<?>[] columns, Report report, long created) {
+            for (Column<?> column : columns) {
+                this.columns.add(column != null ? new WeakReference<>(column) : null);
+            }
+            this.report = report;
+            this.created = created;
+        }
+
+        boolean matches(Column<?>[] others, boolean logDuplicates) {
+            if (logDuplicates != report.logDuplicates) return false;
+            for (int i = 0; i < others.length; i++) {
+                WeakReference<Column<?>> ref = columns.get(i);
+                Column<?> column = ref != null ? ref.get() : null;
+                if (column != others[i]) return false;
+            }
+            return true;
+        }
+    }
+
+}
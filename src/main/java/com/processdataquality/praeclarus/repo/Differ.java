@@ -16,52 +16,360 @@
 
 package com.processdataquality.praeclarus.repo;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.selection.BitmapBackedSelection;
+import tech.tablesaw.selection.Selection;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
+ * Compares two versions of a table by content rather than by position, so that an
+ * inserted or removed row shows up as just that row.
+ *
+ * Each row is reduced to a 64-bit hash of its values, and rows with equal hashes
+ * are verified value by value. Rows are equal only if the two versions have the
+ * same columns (by name, in any order): if a column was added, removed or renamed,
+ * no row of one version equals a row of the other, so every row is reported.
+ * Without a key column, the rows of each version are treated as a multiset: a row
+ * is added or removed if it has no equal partner in the other version. With a key
+ * column (such as a case id), rows are grouped by key: the rows of keys found in
+ * only one version are added or removed, and unmatched rows within keys found in
+ * both are reported as changed, paired in row order. Hashing and grouping are
+ * linear, and matching sorts only the row indexes, so time is O(n log n) and
+ * memory a few primitives per row.
+ *
  * @author Michael Adams
  * @date 10/11/21
  */
 public class Differ {
 
-    public List<Table> diff(String content1, String content2) throws IOException {
-        StringBuilder content1Diff = new StringBuilder();
-        StringBuilder content2Diff = new StringBuilder();
-        LineIterator li1 = new LineIterator(new StringReader(content1));
-        LineIterator li2 = new LineIterator(new StringReader(content2));
+    public static final String CHANGE_COLUMN = "Change";
 
-        while (li1.hasNext() || li2.hasNext()) {
-            String left = (li1.hasNext() ? li1.nextLine() : "") + "\n";
-            String right = (li2.hasNext() ? li2.nextLine() : "") + "\n";
+    /**
+     * Receives the differences between two versions of a table, as row indexes
+     */
+    public interface Listener {
 
-            // add first line as header, otherwise add if different
-            if (content1Diff.length() == 0 || !left.equals(right)) {
-                content1Diff.append(left);
-                content2Diff.append(right);
-            }
-        }
-        return tableList(content1Diff.toString(), content2Diff.toString());
+        /** @param currentRow a row found only in the current version */
+        void added(int currentRow);
+
+        /** @param previousRow a row found only in the previous version */
+        void removed(int previousRow);
+
+        /**
+         * @param previousRow a row of the previous version
+         * @param currentRow the row of the current version with the same key that
+         *                   replaced it
+         */
+        void changed(int previousRow, int currentRow);
     }
 
 
-    private List<Table> tableList(String lines1, String lines2) throws IOException {
+    /**
+     * Compares two versions of a table, treating each as a multiset of rows
+     * @param current the later version
+     * @param previous the earlier version
+     * @return a list of two tables: the rows of the previous version that differ,
+     * followed by the rows of the current version that differ. Each has a leading
+     * column describing the change
+     */
+    public List<Table> diff(Table current, Table previous) {
+        return diff(current, previous, null);
+    }
+
+
+    /**
+     * Compares two versions of a table
+     * @param current the later version
+     * @param previous the earlier version
+     * @param keyColumn the name of a column to group rows by, or null to compare
+     *                  the tables as multisets of rows
+     * @return a list of two tables: the rows of the previous version that differ,
+     * followed by the rows of the current version that differ. Each has a leading
+     * column describing the change
+     */
+    public List<Table> diff(Table current, Table previous, String keyColumn) {
+        Map<Integer, String> prevChanges = new TreeMap<>();
+        Map<Integer, String> currChanges = new TreeMap<>();
+        diff(current, previous, keyColumn, new Listener() {
+            @Override
+            public void added(int currentRow) { currChanges.put(currentRow, "Added"); }
+
+            @Override
+            public void removed(int previousRow) { prevChanges.put(previousRow, "Removed"); }
+
+            @Override
+            public void changed(int previousRow, int currentRow) {
+                prevChanges.put(previousRow, "Changed");
+                currChanges.put(currentRow, "Changed");
+            }
+        });
+
         List<Table> tableList = new ArrayList<>();
-        tableList.add(csvToTable(lines2));               // list previous first
-        tableList.add(csvToTable(lines1));
+        tableList.add(select(previous, prevChanges));            // list previous first
+        tableList.add(select(current, currChanges));
         return tableList;
     }
 
 
-    private Table csvToTable(String csvLines) throws IOException {
-        return Table.read().csv(IOUtils.toInputStream(csvLines, Charset.defaultCharset()));
+    /**
+     * Compares two versions of a table, passing each difference to a listener as
+     * it is found
+     * @param current the later version
+     * @param previous the earlier version
+     * @param keyColumn the name of a column to group rows by, or null to compare
+     *                  the tables as multisets of rows
+     * @param listener receives the differences
+     */
+    public void diff(Table current, Table previous, String keyColumn, Listener listener) {
+        RowComparer comparer = new RowComparer(current, previous);
+        long[] currHashes = null;
+        long[] prevHashes = null;
+        if (comparer.sameColumns()) {
+            currHashes = comparer.currentHashes(current.rowCount());
+            prevHashes = comparer.previousHashes(previous.rowCount());
+        }
+
+        if (keyColumn == null || ! (current.containsColumn(keyColumn) &&
+                previous.containsColumn(keyColumn))) {
+            IntArrayList unmatchedCurr = new IntArrayList();
+            IntArrayList unmatchedPrev = new IntArrayList();
+            match(allRows(current), currHashes, allRows(previous), prevHashes,
+                    comparer, unmatchedCurr, unmatchedPrev);
+            unmatchedPrev.forEach((int row) -> listener.removed(row));
+            unmatchedCurr.forEach((int row) -> listener.added(row));
+            return;
+        }
+
+        Map<String, IntList> currGroups = group(current.column(keyColumn));
+        Map<String, IntList> prevGroups = group(previous.column(keyColumn));
+        for (Map.Entry<String, IntList> entry : prevGroups.entrySet()) {
+            IntList currRows = currGroups.get(entry.getKey());
+            if (currRows == null) {
+                entry.getValue().forEach((int row) -> listener.removed(row));
+                continue;
+            }
+            IntArrayList unmatchedCurr = new IntArrayList();
+            IntArrayList unmatchedPrev = new IntArrayList();
+            match(currRows.toIntArray(), currHashes, entry.getValue().toIntArray(),
+                    prevHashes, comparer, unmatchedCurr, unmatchedPrev);
+            int paired = Math.min(unmatchedCurr.size(), unmatchedPrev.size());
+            for (int i = 0; i < paired; i++) {
+                listener.changed(unmatchedPrev.getInt(i), unmatchedCurr.getInt(i));
+            }
+            for (int i = paired; i < unmatchedPrev.size(); i++) {
+                listener.removed(unmatchedPrev.getInt(i));
+            }
+            for (int i = paired; i < unmatchedCurr.size(); i++) {
+                listener.added(unmatchedCurr.getInt(i));
+            }
+        }
+        for (Map.Entry<String, IntList> entry : currGroups.entrySet()) {
+            if (! prevGroups.containsKey(entry.getKey())) {
+                entry.getValue().forEach((int row) -> listener.added(row));
+            }
+        }
+    }
+
+
+    // pairs equal rows of the two sets, collecting those left over in row order
+    private void match(int[] currRows, long[] currHashes, int[] prevRows, long[] prevHashes,
+                       RowComparer comparer, IntArrayList unmatchedCurr,
+                       IntArrayList unmatchedPrev) {
+        if (! comparer.sameColumns()) {                 // no row can be equal
+            unmatchedCurr.addElements(unmatchedCurr.size(), currRows);
+            unmatchedPrev.addElements(unmatchedPrev.size(), prevRows);
+            return;
+        }
+        IntArrays.quickSort(currRows, (a, b) -> Long.compare(currHashes[a], currHashes[b]));
+        IntArrays.quickSort(prevRows, (a, b) -> Long.compare(prevHashes[a], prevHashes[b]));
+
+        int c = 0;
+        int p = 0;
+        while (c < currRows.length && p < prevRows.length) {
+            long currHash = currHashes[currRows[c]];
+            long prevHash = prevHashes[prevRows[p]];
+            if (currHash < prevHash) {
+                unmatchedCurr.add(currRows[c++]);
+            }
+            else if (prevHash < currHash) {
+                unmatchedPrev.add(prevRows[p++]);
+            }
+            else {
+
+                // a run of equal hashes in each: pair rows that are really equal
+                int cEnd = c;
+                while (cEnd < currRows.length && currHashes[currRows[cEnd]] == currHash) cEnd++;
+                int pEnd = p;
+                while (pEnd < prevRows.length && prevHashes[prevRows[pEnd]] == prevHash) pEnd++;
+                matchRun(currRows, c, cEnd, prevRows, p, pEnd, comparer, unmatchedCurr,
+                        unmatchedPrev);
+                c = cEnd;
+                p = pEnd;
+            }
+        }
+        while (c < currRows.length) unmatchedCurr.add(currRows[c++]);
+        while (p < prevRows.length) unmatchedPrev.add(prevRows[p++]);
+
+        IntArrays.quickSort(unmatchedCurr.elements(), 0, unmatchedCurr.size());
+        IntArrays.quickSort(unmatchedPrev.elements(), 0, unmatchedPrev.size());
+    }
+
+
+    // pairs equal rows within runs of rows with the same hash. The previous rows are
+    // split into classes of equal rows, each compared with through its first row, and
+    // each current row takes the next unpaired row of its class. As rows with equal
+    // hashes are almost always equal, there is usually one class, so duplicated rows
+    // cost one comparison each rather than one per pair
+    private void matchRun(int[] currRows, int cStart, int cEnd, int[] prevRows, int pStart,
+                          int pEnd, RowComparer comparer, IntArrayList unmatchedCurr,
+                          IntArrayList unmatchedPrev) {
+        List<IntArrayList> classes = new ArrayList<>();
+        for (int j = pStart; j < pEnd; j++) {
+            IntArrayList rowClass = null;
+            for (IntArrayList candidate : classes) {
+                if (comparer.previousEqual(candidate.getInt(0), prevRows[j])) {
+                    rowClass = candidate;
+                    break;
+                }
+            }
+            if (rowClass == null) {
+                rowClass = new IntArrayList();
+                classes.add(rowClass);
+            }
+            rowClass.add(prevRows[j]);
+        }
+
+        int[] paired = new int[classes.size()];         // rows of each class taken
+        for (int i = cStart; i < cEnd; i++) {
+            boolean found = false;
+            for (int k = 0; k < classes.size() && ! found; k++) {
+                IntArrayList rowClass = classes.get(k);
+                if (comparer.equal(currRows[i], rowClass.getInt(0))) {
+                    found = paired[k] < rowClass.size();
+                    if (found) paired[k]++;
+                    break;                              // no other class can be equal
+                }
+            }
+            if (! found) unmatchedCurr.add(currRows[i]);
+        }
+        for (int k = 0; k < classes.size(); k++) {
+            IntArrayList rowClass = classes.get(k);
+            for (int j = paired[k]; j < rowClass.size(); j++) {
+                unmatchedPrev.add(rowClass.getInt(j));
+            }
+        }
+    }
+
+
+    private Map<String, IntList> group(Column<?> keys) {
+        Map<String, IntList> groups = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            groups.computeIfAbsent(keys.getUnformattedString(i),
+                    k -> new IntArrayList()).add(i);
+        }
+        return groups;
+    }
+
+
+    private int[] allRows(Table table) {
+        int[] rows = new int[table.rowCount()];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        return rows;
+    }
+
+
+    private Table select(Table table, Map<Integer, String> changes) {
+        Selection selection = new BitmapBackedSelection();
+        changes.keySet().forEach(selection::add);
+        Table selected = table.where(selection);
+        selected.insertColumn(0, StringColumn.create(CHANGE_COLUMN, changes.values()));
+        return selected;
+    }
+
+
+    /**
+     * Hashes and compares rows across the two versions, column by column by name
+     */
+    private static class RowComparer {
+
+        private final List<Column<?>> currColumns = new ArrayList<>();
+        private final List<Column<?>> prevColumns = new ArrayList<>();
+        private final boolean sameColumns;
+
+        RowComparer(Table current, Table previous) {
+            for (Column<?> column : current.columns()) {
+                if (previous.containsColumn(column.name())) {
+                    currColumns.add(column);
+                    prevColumns.add(previous.column(column.name()));
+                }
+            }
+            sameColumns = currColumns.size() == current.columnCount() &&
+                    currColumns.size() == previous.columnCount();
+        }
+
+
+        // whether the versions have the same column names, so that rows can be equal
+        boolean sameColumns() { return sameColumns; }
+
+
+        long[] currentHashes(int rowCount) { return hashes(currColumns, rowCount); }
+
+        long[] previousHashes(int rowCount) { return hashes(prevColumns, rowCount); }
+
+
+        private long[] hashes(List<Column<?>> columns, int rowCount) {
+            long[] hashes = new long[rowCount];
+            for (Column<?> column : columns) {
+                for (int i = 0; i < hashes.length; i++) {
+                    Object value = column.isMissing(i) ? null : column.get(i);
+                    hashes[i] = hashes[i] * 0x9E3779B97F4A7C15L + Objects.hashCode(value);
+                }
+            }
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = mix(hashes[i]);
+            }
+            return hashes;
+        }
+
+
+        boolean equal(int currRow, int prevRow) {
+            return equal(currColumns, currRow, prevColumns, prevRow);
+        }
+
+
+        boolean previousEqual(int prevRow1, int prevRow2) {
+            return equal(prevColumns, prevRow1, prevColumns, prevRow2);
+        }
+
+
+        private boolean equal(List<Column<?>> columns1, int row1, List<Column<?>> columns2,
+                              int row2) {
+            for (int i = 0; i < columns1.size(); i++) {
+                Column<?> column1 = columns1.get(i);
+                Column<?> column2 = columns2.get(i);
+                Object value1 = column1.isMissing(row1) ? null : column1.get(row1);
+                Object value2 = column2.isMissing(row2) ? null : column2.get(row2);
+                if (! Objects.equals(value1, value2)) return false;
+            }
+            return true;
+        }
+
+
+        // spreads the bits of the combined hash (the murmur3 finaliser)
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
     }
 
 }
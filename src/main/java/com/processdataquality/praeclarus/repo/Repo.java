@@ -16,6 +16,8 @@
 
 package com.processdataquality.praeclarus.repo;
 
+import com.processdataquality.praeclarus.util.TableView;
+import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
@@ -30,15 +32,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.tablesaw.api.Table;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
+ * The versioned store of node output tables. Commits are written behind: callers
+ * get a future for the commit id and carry on, while a single writer thread
+ * serialises queued tables to the repo directory and commits them. Queued tables
+ * are committed in the order they were submitted, and several pending outputs are
+ * grouped into one commit when the writer falls behind, as long as they have the
+ * same author and are stored under different file names. A shutdown hook drains the
+ * queue before the JVM exits.
+ *
  * @author Michael Adams
  * @date 5/11/21
  */
@@ -46,47 +57,180 @@ public class Repo {
 
     private static final Logger LOG = LoggerFactory.getLogger(Repo.class);
     private static final File REPO_DIR = new File("../pdq_repo");
+    private static final int MAX_BATCH = 32;                 // outputs per commit
+    private static final int MAX_QUEUED = MAX_BATCH * 4;     // before callers wait
+
+    private static final BlockingQueue<PendingCommit> QUEUE =
+            new LinkedBlockingQueue<>(MAX_QUEUED);
+    private static final Object LOCK = new Object();
+    private static final Object READ_LOCK = new Object();
+
+    // decoded tables, keyed by commit and table id
+    private static final TableCache CACHE = new TableCache(Runtime.getRuntime().maxMemory() / 8);
+    private static Git _git;                         // one long-lived handle to the repo
+    private static ObjectReader _reader;             // shared by all reads, under its lock
+    private static Thread _writer;
+    private static volatile boolean _shutdown;
+    private static int _inFlight;                    // queued or being committed
 
     static {
         checkInitiated();
+        Runtime.getRuntime().addShutdownHook(new Thread(Repo::shutdown, "pdq-repo-shutdown"));
     }
 
 
     private Repo() { }
 
 
+    /**
+     * Queues a table to be committed to the repo. A copy-on-write view of the table
+     * is queued rather than a copy, so the caller may go on to make structural
+     * changes to the table but must not change its columns in place (see
+     * TableView). If the queue is full, waits until the writer has made room.
+     * @param table the table to commit; its name is used as the file name
+     * @param msg the commit message
+     * @param user the commit author
+     * @return a future that completes with the id of the commit containing the table
+     */
+    public static CompletableFuture<String> commitAsync(Table table, String msg, String user) {
+        PendingCommit pending = new PendingCommit(TableView.of(table), msg, user);
+        synchronized (LOCK) {
+            if (_shutdown) {
+                pending.future.completeExceptionally(
+                        new IOException("Repo is shut down, commit refused"));
+                return pending.future;
+            }
+            startWriter();
+            _inFlight++;
+        }
+        try {
+            QUEUE.put(pending);          // outside the lock, which the writer needs
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (LOCK) {
+                _inFlight--;
+                LOCK.notifyAll();
+            }
+            pending.future.completeExceptionally(
+                    new IOException("Interrupted while queueing commit", e));
+        }
+        return pending.future;
+    }
+
+
+    /**
+     * Commits a table to the repo, waiting until the commit is complete
+     * @return the commit id
+     */
     public static String commit(Table table, String msg, String user)
             throws IOException, GitAPIException {
-        String fileName = write(table);
+        try {
+            return commitAsync(table, msg, user).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for commit", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof GitAPIException) throw (GitAPIException) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
 
-        try (Git git = Git.open(REPO_DIR)) {
-            git.add().addFilepattern(fileName).call();
-            RevCommit rev = git.commit().setMessage(msg)
-                    .setAuthor(user, "user@example.com")
-                    .call();                    
-            return rev.getId().name();
+    /**
+     * Waits until every commit queued so far has been written
+     */
+    public static void flush() {
+        synchronized (LOCK) {
+            while (_inFlight > 0) {
+                try {
+                    LOCK.wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
         }
     }
 
 
+    /**
+     * Refuses further commits, writes out everything already queued and closes
+     * the repo. Called on JVM shutdown.
+     */
+    public static void shutdown() {
+        synchronized (LOCK) {
+            if (_shutdown) return;
+            _shutdown = true;
+        }
+        flush();
+        synchronized (READ_LOCK) {
+            if (_reader != null) {
+                _reader.close();
+                _reader = null;
+            }
+        }
+        synchronized (LOCK) {
+            if (_writer != null) _writer.interrupt();
+            if (_git != null) {
+                _git.close();
+                _git = null;
+            }
+        }
+    }
+
 
+    /**
+     * Gets a table as it was at a commit. Tables are stored as snapshots; tables
+     * committed before snapshots were introduced are read from CSV
+     * @param objID the commit id
+     * @param tableName the name the table was stored under
+     * @return a copy-on-write view of the table (see TableView)
+     * @throws IOException if the commit does not contain the table
+     */
     public static Table getTable(String objID, String tableName) throws IOException {
-        String content = fetchContent(objID, tableName);
-        return Table.read().csv(content, tableName);
+        Table table = CACHE.get(objID, tableName);
+        if (table == null) {
+            table = decodeTable(objID, tableName);
+            CACHE.put(objID, tableName, table);
+            table = TableView.of(table);      // the decoded table is now shared by the cache
+        }
+        return table;
     }
 
 
-    public static List<LogEntry> getFullLog() throws IOException, GitAPIException {
-        try (Git git = Git.open(REPO_DIR)) {
-            return listLog(git.log().all().call());
+    /** @return the cache of decoded tables, for its metrics */
+    public static TableCache getTableCache() { return CACHE; }
+
+
+    private static Table decodeTable(String objID, String tableName) throws IOException {
+        byte[] blob = fetchBlob(objID, tableName + TableSnapshot.FILE_EXTN);
+        if (blob != null) {
+            return TableSnapshot.read(new ByteArrayInputStream(blob), tableName);
+        }
+        blob = fetchBlob(objID, tableName + ".csv");
+        if (blob != null) {
+            return Table.read().csv(new String(blob, StandardCharsets.UTF_8), tableName);
         }
+        throw new FileNotFoundException("No table '" + tableName + "' in commit " + objID);
+    }
+
+
+    public static List<LogEntry> getFullLog() throws IOException, GitAPIException {
+        flush();
+        return listLog(git().log().all().call());
     }
 
 
     public static List<LogEntry> getLog(String fileName) throws GitAPIException, IOException {
-        try (Git git = Git.open(REPO_DIR)) {
-            return listLog(git.log().addPath(fileName + ".csv").call());
-        }
+        flush();
+        return listLog(git().log().addPath(fileName + TableSnapshot.FILE_EXTN)
+                .addPath(fileName + ".csv").call());
     }
     
 
@@ -105,11 +249,119 @@ public class Repo {
         }
     }
 
+
+    // caller holds READ_LOCK
+    private static ObjectReader reader() throws IOException {
+        if (_reader == null) {
+            _reader = git().getRepository().newObjectReader();
+        }
+        return _reader;
+    }
+
+
+    private static Git git() throws IOException {
+        synchronized (LOCK) {
+            if (_git == null) {
+                _git = Git.open(REPO_DIR);
+            }
+            return _git;
+        }
+    }
+
+
+    // caller holds LOCK
+    private static void startWriter() {
+        if (_writer == null) {
+            _writer = new Thread(Repo::drainQueue, "pdq-repo-writer");
+            _writer.setDaemon(true);      // the shutdown hook, not the thread, ensures durability
+            _writer.start();
+        }
+    }
+
+
+    private static void drainQueue() {
+        List<PendingCommit> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+            }
+            catch (InterruptedException e) {
+                if (_shutdown && QUEUE.isEmpty()) return;
+                continue;
+            }
+            QUEUE.drainTo(batch, MAX_BATCH - 1);
+            commitBatch(batch);
+            synchronized (LOCK) {
+                _inFlight -= batch.size();
+                LOCK.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+
+    // commits the batch as runs of consecutive outputs that share an author and
+    // write to distinct files, so no output in a commit overwrites another and each
+    // commit keeps a single author
+    private static void commitBatch(List<PendingCommit> batch) {
+        int start = 0;
+        Set<String> fileNames = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingCommit pending = batch.get(i);
+            boolean newAuthor = !Objects.equals(pending.user, batch.get(start).user);
+            if (newAuthor || !fileNames.add(fileName(pending.table))) {
+                commitRun(batch.subList(start, i));
+                start = i;
+                fileNames.clear();
+                fileNames.add(fileName(pending.table));
+            }
+        }
+        commitRun(batch.subList(start, batch.size()));
+    }
+
+
+    // writes each table in the run, then commits them together
+    private static void commitRun(List<PendingCommit> run) {
+        try {
+            Git git = git();
+            AddCommand add = git.add();
+            for (PendingCommit pending : run) {
+                add.addFilepattern(write(pending.table));
+            }
+            add.call();
+            RevCommit rev = git.commit().setMessage(runMessage(run))
+                    .setAuthor(run.get(0).user, "user@example.com")
+                    .call();
+            String id = rev.getId().name();
+            run.forEach(pending -> pending.future.complete(id));
+        }
+        catch (Exception e) {
+            LOG.error("Failed to commit {} table(s) to repo", run.size(), e);
+            run.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+
+    private static String runMessage(List<PendingCommit> run) {
+        if (run.size() == 1) return run.get(0).msg;
+        StringBuilder sb = new StringBuilder("Batch of ")
+                .append(run.size()).append(" outputs\n");
+        run.forEach(pending -> sb.append('\n').append(pending.msg));
+        return sb.toString();
+    }
+
+
+    private static String fileName(Table table) {
+        return table.name() + TableSnapshot.FILE_EXTN;
+    }
+
    
     private static String write(Table table) throws IOException {
-        String fileName = table.name() + ".csv";         // needs extn for write() below
+        String fileName = fileName(table);
         File file = new File(REPO_DIR, fileName);
-        table.write().toFile(file);
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 65536)) {
+            TableSnapshot.write(table, os);
+        }
         return fileName;
     }
 
@@ -129,34 +381,58 @@ public class Repo {
     }
 
 
+    /**
+     * Exports a table as it was at a commit as CSV text
+     * @param commitID the commit id
+     * @param path the name the table was stored under
+     * @return the table as CSV, or an empty string if the commit does not contain it
+     */
+    public static String fetchContent(String commitID, String path) throws IOException {
+        Table table;
+        try {
+            table = getTable(commitID, path);
+        }
+        catch (FileNotFoundException e) {
+            return "";
+        }
+        StringWriter writer = new StringWriter();
+        table.write().csv(writer);
+        return writer.toString();
+    }
+
+
     // based on: https://stackoverflow.com/questions/1685228/how-to-cat-a-file-in-jgit
-    public static String fetchContent(String commitID, String path)
+    private static byte[] fetchBlob(String commitID, String path)
             throws MissingObjectException, IncorrectObjectTypeException,
             IOException {
 
-        ObjectReader reader = null;
-        try (Git git = Git.open(REPO_DIR)) {
-            ObjectId id = ObjectId.fromString(commitID);
-            reader = git.getRepository().newObjectReader();
+        ObjectId id = ObjectId.fromString(commitID);
+        synchronized (READ_LOCK) {                    // ObjectReaders aren't thread-safe
+            ObjectReader reader = reader();
+            RevWalk walk = new RevWalk(reader);
 
             // Get the commit object for that revision
-            RevWalk walk = new RevWalk(reader);
             RevCommit commit = walk.parseCommit(id);
 
             // Get the revision's file tree and the single file's path
             RevTree tree = commit.getTree();
-            TreeWalk treewalk = TreeWalk.forPath(reader, path + ".csv", tree);
+            TreeWalk treewalk = TreeWalk.forPath(reader, path, tree);
 
-            if (treewalk != null) {
-                byte[] data = reader.open(treewalk.getObjectId(0)).getBytes();
-                return new String(data, StandardCharsets.UTF_8);
-            }
-            else {
-                return "";
-            }
+            return treewalk != null ? reader.open(treewalk.getObjectId(0)).getBytes() : null;
         }
-        finally {
-            if (reader != null) reader.close();
+    }
+
+
+    private static class PendingCommit {
+        final Table table;
+        final String msg;
+        final String user;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        PendingCommit(Table table, String msg, String user) {
+            this.table = table;
+            this.msg = msg;
+            this.user = user;
         }
     }
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.repo;
+
+import com.processdataquality.praeclarus.util.TableView;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of tables decoded from the repo, keyed by commit and
+ * table id and bounded by the estimated heap size of the tables it holds. Since a
+ * table at a given commit never changes, entries never go stale.
+ *
+ * Callers receive copy-on-write views (see TableView), so many callers can share
+ * one decoded table.
+ */
+public class TableCache {
+
+    private final long _maxBytes;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long _bytes;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+
+
+    public TableCache(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+
+    /**
+     * @param commitID the commit the table was read from
+     * @param tableID the table's name in the repo
+     * @return a view of the cached table, or null if it isn't cached
+     */
+    public Table get(String commitID, String tableID) {
+        Entry entry;
+        synchronized (this) {
+            entry = _entries.get(new Key(commitID, tableID));
+        }
+        if (entry == null) {
+            _misses.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return TableView.of(entry.table);
+    }
+
+
+    /**
+     * Adds a table to the cache, evicting the least recently used tables as needed.
+     * A table larger than the whole cache is not added
+     * @param commitID the commit the table was read from
+     * @param tableID the table's name in the repo
+     * @param table the decoded table (a view of it is stored)
+     */
+    public void put(String commitID, String tableID, Table table) {
+        long bytes = estimateBytes(table);
+        if (bytes > _maxBytes) return;
+        Entry entry = new Entry(TableView.of(table), bytes);
+
+        synchronized (this) {
+            Entry previous = _entries.put(new Key(commitID, tableID), entry);
+            if (previous != null) _bytes -= previous.bytes;
+            _bytes += bytes;
+
+            Iterator<Entry> itr = _entries.values().iterator();
+            while (_bytes > _maxBytes && itr.hasNext()) {
+                Entry eldest = itr.next();
+                if (eldest == entry) break;
+                itr.remove();
+                _bytes -= eldest.bytes;
+                _evictions.incrementAndGet();
+            }
+        }
+    }
+
+
+    public synchronized void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+
+    public long getHits() { return _hits.get(); }
+
+    public long getMisses() { return _misses.get(); }
+
+    public long getEvictions() { return _evictions.get(); }
+
+    public long getMaxBytes() { return _maxBytes; }
+
+    public synchronized long getBytes() { return _bytes; }
+
+    public synchronized int size() { return _entries.size(); }
+
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there have been none
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+
+    /**
+     * Estimates the heap occupied by a table: the fixed width of each cell, plus for
+     * string columns a per-row dictionary code and a rough size for each distinct
+     * value
+     * @param table the table
+     * @return the estimated size in bytes
+     */
+    public static long estimateBytes(Table table) {
+        long bytes = 0;
+        for (Column<?> column : table.columns()) {
+            if (column instanceof StringColumn) {
+                bytes += 4L * column.size() + 64L * column.countUnique();
+            }
+            else {
+                bytes += (long) column.type().byteSize() * column.size();
+            }
+        }
+        return bytes;
+    }
+
+
+    private static class Key {
+        final String commitID;
+        final String tableID;
+
+        Key(String commitID, String tableID) {
+            this.commitID = commitID;
+            this.tableID = tableID;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(commitID, other.commitID) &&
+                    Objects.equals(tableID, other.tableID);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(commitID, tableID);
+        }
+    }
+
+
+    private static class Entry {
+        final Table table;
+        final long bytes;
+
+        Entry(Table table, long bytes) {
+            this.table = table;
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.repo;
+
+import tech.tablesaw.api.*;
+import tech.tablesaw.columns.Column;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compact, typed, column-oriented binary format for storing tables in the repo.
+ *
+ * Each column is written as its name and type, a bitmap of missing rows (if any),
+ * then the values of its non-missing rows: strings as a dictionary followed by a
+ * code per row, integral values as zig-zag varints, and dates and times as varint
+ * deltas of their epoch values. The whole stream is deflated. Unlike a CSV round
+ * trip, reading a snapshot restores the original column types without inference.
+ * Columns of types not listed here are stored as strings.
+ */
+public class TableSnapshot {
+
+    public static final String FILE_EXTN = ".pdqt";
+
+    private static final int MAGIC = 0x50445154;               // "PDQT"
+    private static final int VERSION = 1;
+
+    private TableSnapshot() { }
+
+
+    /**
+     * Writes a table as a snapshot
+     * @param table the table to write
+     * @param out the stream to write to. It is finished, but not closed
+     */
+    public static void write(Table table, OutputStream out) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater, 65536);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(dos, 65536));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeString(data, table.name());
+        writeVarInt(data, table.rowCount());
+        writeVarInt(data, table.columnCount());
+        for (Column<?> column : table.columns()) {
+            writeColumn(data, column);
+        }
+        data.flush();
+        dos.finish();
+        deflater.end();
+    }
+
+
+    /**
+     * @param table the table to write
+     * @return the table as snapshot bytes
+     */
+    public static byte[] toBytes(Table table) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(table, bytes);
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Reads a table from a snapshot
+     * @param in the stream to read from
+     * @param name the name to give the table, or null to use the name it was written with
+     * @return the table
+     */
+    public static Table read(InputStream in, String name) throws IOException {
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new InflaterInputStream(in), 65536));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a table snapshot");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported table snapshot version: " + version);
+        }
+        String storedName = readString(data);
+        int rowCount = readVarInt(data);
+        int columnCount = readVarInt(data);
+        Table table = Table.create(name != null ? name : storedName);
+        for (int i = 0; i < columnCount; i++) {
+            table.addColumns(readColumn(data, rowCount));
+        }
+        return table;
+    }
+
+
+    private static void writeColumn(DataOutputStream data, Column<?> column) throws IOException {
+        String type = column.type().name();
+        if (! isSupported(type)) type = "STRING";             // stored as its strings
+        writeString(data, column.name());
+        writeString(data, type);
+        writeMissing(data, column);
+
+        int size = column.size();
+        switch (type) {
+            case "BOOLEAN": {
+                BooleanColumn c = (BooleanColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) data.writeBoolean(c.get(i));
+                }
+                break;
+            }
+            case "SHORT": {
+                ShortColumn c = (ShortColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) writeVarLong(data, zigZag(c.getShort(i)));
+                }
+                break;
+            }
+            case "INTEGER": {
+                IntColumn c = (IntColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) writeVarLong(data, zigZag(c.getInt(i)));
+                }
+                break;
+            }
+            case "LONG": {
+                LongColumn c = (LongColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) writeVarLong(data, zigZag(c.getLong(i)));
+                }
+                break;
+            }
+            case "FLOAT": {
+                FloatColumn c = (FloatColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) data.writeFloat(c.getFloat(i));
+                }
+                break;
+            }
+            case "DOUBLE": {
+                DoubleColumn c = (DoubleColumn) column;
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) data.writeDouble(c.getDouble(i));
+                }
+                break;
+            }
+            case "LOCAL_DATE": {
+                DateColumn c = (DateColumn) column;
+                DeltaWriter deltas = new DeltaWriter(data);
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) deltas.write(c.get(i).toEpochDay());
+                }
+                break;
+            }
+            case "LOCAL_TIME": {
+                TimeColumn c = (TimeColumn) column;
+                DeltaWriter deltas = new DeltaWriter(data);
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) deltas.write(c.get(i).toNanoOfDay());
+                }
+                break;
+            }
+            case "LOCAL_DATE_TIME": {
+                DateTimeColumn c = (DateTimeColumn) column;
+                DeltaWriter deltas = new DeltaWriter(data);
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) deltas.write(toEpochMillis(c.get(i)));
+                }
+                break;
+            }
+            case "INSTANT": {
+                InstantColumn c = (InstantColumn) column;
+                DeltaWriter deltas = new DeltaWriter(data);
+                for (int i = 0; i < size; i++) {
+                    if (! c.isMissing(i)) deltas.write(c.get(i).toEpochMilli());
+                }
+                break;
+            }
+            default:
+                writeStrings(data, column);
+        }
+    }
+
+
+    private static Column<?> readColumn(DataInputStream data, int rowCount) throws IOException {
+        String name = readString(data);
+        String type = readString(data);
+        boolean[] missing = readMissing(data, rowCount);
+
+        switch (type) {
+            case "BOOLEAN": {
+                BooleanColumn c = BooleanColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing(); else c.append(data.readBoolean());
+                }
+                return c;
+            }
+            case "SHORT": {
+                ShortColumn c = ShortColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append((short) unZigZag(readVarLong(data)));
+                }
+                return c;
+            }
+            case "INTEGER": {
+                IntColumn c = IntColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append((int) unZigZag(readVarLong(data)));
+                }
+                return c;
+            }
+            case "LONG": {
+                LongColumn c = LongColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append(unZigZag(readVarLong(data)));
+                }
+                return c;
+            }
+            case "FLOAT": {
+                FloatColumn c = FloatColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing(); else c.append(data.readFloat());
+                }
+                return c;
+            }
+            case "DOUBLE": {
+                DoubleColumn c = DoubleColumn.create(name);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing(); else c.append(data.readDouble());
+                }
+                return c;
+            }
+            case "LOCAL_DATE": {
+                DateColumn c = DateColumn.create(name);
+                DeltaReader deltas = new DeltaReader(data);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append(LocalDate.ofEpochDay(deltas.read()));
+                }
+                return c;
+            }
+            case "LOCAL_TIME": {
+                TimeColumn c = TimeColumn.create(name);
+                DeltaReader deltas = new DeltaReader(data);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append(LocalTime.ofNanoOfDay(deltas.read()));
+                }
+                return c;
+            }
+            case "LOCAL_DATE_TIME": {
+                DateTimeColumn c = DateTimeColumn.create(name);
+                DeltaReader deltas = new DeltaReader(data);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append(fromEpochMillis(deltas.read()));
+                }
+                return c;
+            }
+            case "INSTANT": {
+                InstantColumn c = InstantColumn.create(name);
+                DeltaReader deltas = new DeltaReader(data);
+                for (int i = 0; i < rowCount; i++) {
+                    if (missing[i]) c.appendMissing();
+                    else c.append(Instant.ofEpochMilli(deltas.read()));
+                }
+                return c;
+            }
+            case "STRING":
+                return readStrings(data, name, rowCount, missing);
+            default:
+                throw new IOException("Unsupported column type in table snapshot: " + type);
+        }
+    }
+
+
+    private static boolean isSupported(String type) {
+        switch (type) {
+            case "BOOLEAN": case "SHORT": case "INTEGER": case "LONG": case "FLOAT":
+            case "DOUBLE": case "LOCAL_DATE": case "LOCAL_TIME": case "LOCAL_DATE_TIME":
+            case "INSTANT": case "STRING": return true;
+            default: return false;
+        }
+    }
+
+
+    // a dictionary of distinct values, in first-seen order, then a code for each row
+    private static void writeStrings(DataOutputStream data, Column<?> column)
+            throws IOException {
+        int size = column.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] codes = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (column.isMissing(i)) continue;
+            String value = column.getUnformattedString(i);
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+            codes[count++] = code;
+        }
+        String[] values = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            values[entry.getValue()] = entry.getKey();
+        }
+        writeVarInt(data, values.length);
+        for (String value : values) {
+            writeString(data, value);
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarInt(data, codes[i]);
+        }
+    }
+
+
+    private static StringColumn readStrings(DataInputStream data, String name,
+                                            int rowCount, boolean[] missing)
+            throws IOException {
+        String[] values = new String[readVarInt(data)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(data);
+        }
+        StringColumn c = StringColumn.create(name);
+        for (int i = 0; i < rowCount; i++) {
+            if (missing[i]) c.appendMissing(); else c.append(values[readVarInt(data)]);
+        }
+        return c;
+    }
+
+
+    // a count of missing values, then (if any) a bitmap with a bit set for each
+    private static void writeMissing(DataOutputStream data, Column<?> column)
+            throws IOException {
+        int size = column.size();
+        int count = column.countMissing();
+        writeVarInt(data, count);
+        if (count > 0) {
+            byte[] bitmap = new byte[(size + 7) / 8];
+            for (int i = 0; i < size; i++) {
+                if (column.isMissing(i)) bitmap[i >> 3] |= (byte) (1 << (i & 7));
+            }
+            data.write(bitmap);
+        }
+    }
+
+
+    private static boolean[] readMissing(DataInputStream data, int rowCount)
+            throws IOException {
+        boolean[] missing = new boolean[rowCount];
+        if (readVarInt(data) > 0) {
+            byte[] bitmap = new byte[(rowCount + 7) / 8];
+            data.readFully(bitmap);
+            for (int i = 0; i < rowCount; i++) {
+                missing[i] = (bitmap[i >> 3] & (1 << (i & 7))) != 0;
+            }
+        }
+        return missing;
+    }
+
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[readVarInt(data)];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        writeVarLong(data, value & 0xFFFFFFFFL);
+    }
+
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        return (int) readVarLong(data);
+    }
+
+
+    // 7 bits per byte, high bit set on all but the last byte
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint in table snapshot");
+    }
+
+
+    // each value written as the zig-zag varint difference from the previous one
+    private static class DeltaWriter {
+        private final DataOutputStream data;
+        private long previous;
+
+        DeltaWriter(DataOutputStream data) { this.data = data; }
+
+        void write(long value) throws IOException {
+            writeVarLong(data, zigZag(value - previous));
+            previous = value;
+        }
+    }
+
+
+    private static class DeltaReader {
+        private final DataInputStream data;
+        private long previous;
+
+        DeltaReader(DataInputStream data) { this.data = data; }
+
+        long read() throws IOException {
+            previous += unZigZag(readVarLong(data));
+            return previous;
+        }
+    }
+
+}
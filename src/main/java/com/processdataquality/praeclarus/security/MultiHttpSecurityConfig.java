@@ -27,11 +27,13 @@ import org.springframework.security.authentication.DefaultAuthenticationEventPub
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.context.NullSecurityContextRepository;
 
 /**
  * @author Michael Adams
@@ -49,7 +51,14 @@ public class MultiHttpSecurityConfig {
 
         @Bean
         public SecurityFilterChain filterChainApp1(HttpSecurity http) throws Exception {
-            http.antMatcher("/api/**")
+            // stateless basic auth clients, e.g. schedulers: each request must carry its
+            // own credentials, and a browser's UI session is neither created nor read,
+            // so CSRF protection isn't needed
+            http.requestMatchers(m -> m.antMatchers("/api/**", "/actuator/**"))
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and().securityContext()
+                    .securityContextRepository(new NullSecurityContextRepository())
+                    .and().csrf().disable()
                     .authorizeRequests().anyRequest().authenticated().and().httpBasic();
             return http.build();
         }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
+
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
+import com.processdataquality.praeclarus.util.TableFingerprint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the similarity matrices of the individual context dimensions (control
+ * flow, resource, time, etc.), so that the contextual label detectors don't
+ * recalculate them when only a weight or threshold that combines them has changed.
+ *
+ * A matrix is keyed by the log it was calculated from (a fingerprint of the table
+ * plus the label and sort columns, which determine how the table is parsed) and by
+ * the dimension and whichever options it alone depends on. Matrices are shared by
+ * all detectors, held in memory up to an approximate byte budget and evicted
+ * least-recently-used first. Cached matrices must not be modified.
+ */
+public class ContextSimilarityCache {
+
+    private static final long MAX_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, SimilarityMatrix> ENTRIES =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static long _bytes;
+
+    private ContextSimilarityCache() { }
+
+
+    /**
+     * Builds the key identifying a parsed log
+     * @param fingerprint the fingerprint of the log's table
+     * @param labelColumn the name of the activity label column
+     * @param sortColumn the name of the column the events are sorted by
+     * @return the key
+     */
+    public static String logKey(String fingerprint, String labelColumn, String sortColumn) {
+        return TableFingerprint.digest(fingerprint, labelColumn, sortColumn);
+    }
+
+
+    /**
+     * Gets the matrix of a dimension for a log, calculating and storing it if it
+     * isn't already held
+     * @param logKey the key of the parsed log
+     * @param dimension the name of the dimension, followed by the values of any
+     *                  options the dimension depends on
+     * @param calculator calculates the matrix
+     * @return the matrix
+     */
+    public static SimilarityMatrix get(String logKey, String dimension,
+                                       Supplier<SimilarityMatrix> calculator) {
+        String key = TableFingerprint.digest(logKey, dimension);
+        SimilarityMatrix matrix;
+        synchronized (ContextSimilarityCache.class) {
+            matrix = ENTRIES.get(key);
+        }
+        if (matrix != null) {
+            HITS.incrementAndGet();
+            return matrix;
+        }
+
+        // calculated outside the lock, so that detectors don't queue behind each other
+        MISSES.incrementAndGet();
+        matrix = calculator.get();
+        store(key, matrix);
+        return matrix;
+    }
+
+
+    /**
+     * Removes all entries
+     */
+    public static synchronized void clear() {
+        ENTRIES.clear();
+        _bytes = 0;
+    }
+
+
+    public static long getHits() { return HITS.get(); }
+
+    public static long getMisses() { return MISSES.get(); }
+
+    public static synchronized long getBytes() { return _bytes; }
+
+    public static synchronized int size() { return ENTRIES.size(); }
+
+
+    private static synchronized void store(String key, SimilarityMatrix matrix) {
+        SimilarityMatrix previous = ENTRIES.put(key, matrix);
+        if (previous != null) _bytes -= previous.getBytes();
+        _bytes += matrix.getBytes();
+
+        Iterator<SimilarityMatrix> itr = ENTRIES.values().iterator();
+        while (_bytes > MAX_BYTES && itr.hasNext()) {
+            SimilarityMatrix eldest = itr.next();
+            if (eldest == matrix) break;                // always keep the newest
+            itr.remove();
+            _bytes -= eldest.getBytes();
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
 import com.processdataquality.praeclarus.support.logelements.Activity;
 import com.processdataquality.praeclarus.support.logelements.Event;
 import com.processdataquality.praeclarus.support.logelements.Trace;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
 
 import java.util.ArrayList;
 
@@ -34,7 +35,7 @@ public class ControlFlowSimilarity {
 	private int nDA;
 	private int[][] Relations;
 	private int[][] footprint;
-	private double[][] DCFS;
+	private SimilarityMatrix DCFS;
 	private double[][] DD;
 	private double[][] ID;
 	private double[][] FSupport;
@@ -48,7 +49,6 @@ public class ControlFlowSimilarity {
 		this.traces = new ArrayList<Trace>(traces);
 		nDA = activities.size();
 		Relations = new int[nDA][nDA];
-		DCFS = new double[nDA][nDA];
 		footprint = new int[nDA][nDA];
 		DD = new double[nDA][nDA];
 		ID = new double[nDA][nDA];
@@ -147,17 +147,9 @@ public class ControlFlowSimilarity {
 	}
 
 
+	// the similarity is symmetric, so each pair is calculated once
 	public void controlFlowSimilarity() {
-
-		for (int i = 0; i < nDA; i++) {
-			for (int j = 0; j < nDA; j++) {
-				if (i == j) {
-					DCFS[i][j] = 1;
-				} else {
-					DCFS[i][j] = controlFlowSimilarity(i, j);
-				}
-			}
-		}
+		DCFS = SimilarityMatrix.compute(nDA, 1, this::controlFlowSimilarity);
 	}
 
 	public double controlFlowSimilarity(int a1, int a2) {
@@ -179,7 +171,7 @@ public class ControlFlowSimilarity {
 		
 	}
 
-	public double[][] getDirectControlFlowSimilarity() {
+	public SimilarityMatrix getDirectControlFlowSimilarity() {
 		return DCFS;
 	}
 
@@ -218,7 +210,7 @@ public class ControlFlowSimilarity {
 		System.out.println("Direct Control Flow Similarity");
 		for (int i = 0; i < nDA; i++) {
 			for (int j = 0; j < nDA; j++) {
-				System.out.print(DCFS[i][j] + "||");
+				System.out.print(DCFS.get(i, j) + "||");
 			}
 			System.out.println();
 		}
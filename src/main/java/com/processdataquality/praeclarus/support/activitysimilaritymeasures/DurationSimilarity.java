@@ -18,6 +18,7 @@ package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
 
 import com.processdataquality.praeclarus.support.logelements.Activity;
 import com.processdataquality.praeclarus.support.math.ErrorFunction;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
 
 import java.util.ArrayList;
 
@@ -30,12 +31,11 @@ public class DurationSimilarity {
 
 	private ArrayList<Activity> activities;
 	private int nDA;
-	private double[][] DS;
+	private SimilarityMatrix DS;
 
 	public DurationSimilarity(ArrayList<Activity> activities) {
 		this.activities = new ArrayList<Activity>(activities);
 		nDA = activities.size();
-		DS = new double[nDA][nDA];
 		durationSimilarity();
 	}
 
@@ -44,23 +44,14 @@ public class DurationSimilarity {
 		for (int i = 0; i < nDA; i++) {
 			hasDuration[i] = activities.get(i).durationDefined();
 		}
-		for (int i = 0; i < nDA; i++) {
-			for (int j = 0; j < nDA; j++) {
-				if (i == j) {
-					DS[i][j] = 1;
-				} else if (hasDuration[i] && hasDuration[j]) {
-					if (j > i) {
-						DS[i][j] = durationSimilarity(activities.get(i), activities.get(j));
-					} else if (i > j) {
-						DS[i][j] = DS[j][i];
-					}
-				} else if ((hasDuration[i] && !hasDuration[j]) || (hasDuration[j] && !hasDuration[i])) {
-					DS[i][j] = 0;
-				} else if (!hasDuration[i] && !hasDuration[j]) {
-					DS[i][j] = -1; // neutral
-				}
+		DS = SimilarityMatrix.compute(nDA, 1, (i, j) -> {
+			if (hasDuration[i] && hasDuration[j]) {
+				return durationSimilarity(activities.get(i), activities.get(j));
+			} else if (hasDuration[i] || hasDuration[j]) {
+				return 0;
 			}
-		}
+			return -1; // neutral
+		});
 	}
 
 	private double durationSimilarity(Activity ad1, Activity ad2) {
@@ -215,7 +206,7 @@ public class DurationSimilarity {
 		return Math.max(xdata1[xdata1.length - 1], xdata2[xdata2.length - 1]);
 	}
 
-	public double[][] getSimilarity() {
+	public SimilarityMatrix getSimilarity() {
 		return DS;
 	}
 
@@ -223,7 +214,7 @@ public class DurationSimilarity {
 		System.out.println("Duration Similarity");
 		for (int i = 0; i < nDA; i++) {
 			for (int j = 0; j < nDA; j++) {
-				System.out.print(DS[i][j] + "||");
+				System.out.print(DS.get(i, j) + "||");
 			}
 			System.out.println();
 		}
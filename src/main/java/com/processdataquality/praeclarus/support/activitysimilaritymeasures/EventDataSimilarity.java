@@ -21,6 +21,7 @@ import com.processdataquality.praeclarus.support.logelements.ActivityData;
 import com.processdataquality.praeclarus.support.logelements.Event;
 import com.processdataquality.praeclarus.support.math.EditDistanceRecursive;
 import com.processdataquality.praeclarus.support.math.Pair;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -35,13 +36,12 @@ public class EventDataSimilarity {
 
 	private ArrayList<Activity> activities;
 	private int nDA;
-	private double[][] DaS;
+	private SimilarityMatrix DaS;
 	private double DANameSimThresh;
 
 	public EventDataSimilarity(ArrayList<Activity> activities, double DANameSimThresh) {
 		this.activities = new ArrayList<Activity>(activities);
 		nDA = activities.size();
-		DaS = new double[nDA][nDA];
 		this.DANameSimThresh = DANameSimThresh;
 		for (Activity a : activities) {
 			a.findPredecessors();
@@ -51,30 +51,16 @@ public class EventDataSimilarity {
 	}
 
 	public void dataSimilarity() {
-
-		for (int i = 0; i < nDA; i++) {
-			for (int j = 0; j < nDA; j++) {
-
-				if (j > i) {
-
-					boolean datai = activities.get(i).hasEventLevelData();
-					boolean dataj = activities.get(j).hasEventLevelData();
-					if (datai && dataj) {
-						//System.out.println("i, j: " + i + ", " + j + " have data");
-						DaS[i][j] = dataSimilarity(activities.get(i), activities.get(j));
-
-					} else if ((datai && !dataj) || (!datai && dataj)) {
-						DaS[i][j] = 0;
-					} else {
-						DaS[i][j] = -1;
-					}
-				} else if (j == i) {
-					DaS[i][j] = 1;
-				} else if (i > j) {
-					DaS[i][j] = DaS[j][i];
-				}
+		DaS = SimilarityMatrix.compute(nDA, 1, (i, j) -> {
+			boolean datai = activities.get(i).hasEventLevelData();
+			boolean dataj = activities.get(j).hasEventLevelData();
+			if (datai && dataj) {
+				return dataSimilarity(activities.get(i), activities.get(j));
+			} else if (datai || dataj) {
+				return 0;
 			}
-		}
+			return -1;
+		});
 	}
 
 	public double predSucDataSimilarity(Activity a1, Activity a2) {
@@ -553,7 +539,7 @@ public class EventDataSimilarity {
 		return res;
 	}
 
-	public double[][] getSimilarity() {
+	public SimilarityMatrix getSimilarity() {
 		return DaS;
 	}
 
@@ -561,7 +547,7 @@ public class EventDataSimilarity {
 		System.out.println("Event Data Similarity");
 		for (int i = 0; i < nDA; i++) {
 			for (int j = 0; j < nDA; j++) {
-				System.out.print(DaS[i][j] + "||");
+				System.out.print(DaS.get(i, j) + "||");
 			}
 			System.out.println();
 		}
@@ -19,6 +19,7 @@ package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
 import java.util.ArrayList;
 
 import com.processdataquality.praeclarus.support.logelements.Activity;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
 
 /**
  * @author Sareh Sadeghianasl
@@ -28,13 +29,12 @@ import com.processdataquality.praeclarus.support.logelements.Activity;
 public class ResourceSimilarity {
 	private ArrayList<Activity> activities;
 	private int nDA;
-	private double[][] RS;
+	private SimilarityMatrix RS;
 
 	
 	public ResourceSimilarity(ArrayList<Activity> activities) {
 		this.activities = new ArrayList<Activity>(activities);
 		nDA = activities.size();
-		RS = new double[nDA][nDA];
 		resourceSimilarity();
 	}
 	
@@ -43,23 +43,13 @@ public class ResourceSimilarity {
 		for (int i = 0; i < nDA; i++) {
 			hasResource[i] = activities.get(i).hasResource();
 		}
-		for(int i = 0; i<nDA ; i++) {
-			for(int j = 0; j<nDA ; j++) {
-				if(j>i) {
-					if(hasResource[i] && hasResource[j])
-						RS[i][j] = resourceSimilarity(activities.get(i), activities.get(j));
-					else if( (hasResource[i] && !hasResource[j]) || (!hasResource[i] && hasResource[j])) {
-						RS[i][j] = 0;
-					}else {
-						RS[i][j] = -1;
-					}
-				}else if (j == i) {
-					RS[i][j] = 1.0;
-				}else if(i>j) {
-					RS[i][j] = RS[j][i];
-				}
-			}
-		}
+		RS = SimilarityMatrix.compute(nDA, 1.0, (i, j) -> {
+			if(hasResource[i] && hasResource[j])
+				return resourceSimilarity(activities.get(i), activities.get(j));
+			else if(hasResource[i] || hasResource[j])
+				return 0;
+			return -1;
+		});
 	}
 	
 	public double resourceSimilarity(Activity a1 , Activity a2) {
@@ -116,7 +106,7 @@ public class ResourceSimilarity {
 	}
 
 	
-	public double[][] getSimilarity(){
+	public SimilarityMatrix getSimilarity(){
 		return RS;
 	}
 	
@@ -124,7 +114,7 @@ public class ResourceSimilarity {
 		System.out.println("Resource Similarity");
 		for(int i = 0; i<nDA ; i++) {
 			for(int j = 0; j<nDA ; j++) {
-				System.out.print(RS[i][j] + "||");
+				System.out.print(RS.get(i, j) + "||");
 			}
 			System.out.println();
 		}		
@@ -17,9 +17,14 @@
 package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
 
 import java.util.ArrayList;
+import java.util.stream.IntStream;
 
 import com.processdataquality.praeclarus.support.logelements.Activity;
-import com.processdataquality.praeclarus.support.math.EditDistanceRecursive;
+import com.processdataquality.praeclarus.support.math.BitParallelLevenshtein;
+import com.processdataquality.praeclarus.support.math.BitParallelLevenshtein.Pattern;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
+
+import it.unimi.dsi.fastutil.ints.IntList;
 
 /**
  * @author Sareh Sadeghianasl
@@ -28,34 +33,51 @@ import com.processdataquality.praeclarus.support.math.EditDistanceRecursive;
 
 public class StringSimilarity {
 
-	private double[][] LS;
+	private SimilarityMatrix LS;
 	ArrayList<Activity> activities;
 
 	public StringSimilarity(ArrayList<Activity> activities) {
 
 		this.activities = activities;
-		LS = new double[activities.size()][activities.size()];
 		computeLabelSimilarity();
 	}
 
-	public void computeLabelSimilarity() {
-		for (int i = 0; i < activities.size(); i++) {
-			for (int j = 0; j < activities.size(); j++) {
-				if (j > i) {
-					LS[i][j] = 1 - EditDistanceRecursive.normalizedDistance(activities.get(i).getName(),
-							activities.get(j).getName());
-//				LS[i][j]= 1-StringDistance.getStringDistance(activities.get(i).getLabel(), activities.get(j).getLabel());
-				}else if(j == i) {
-					LS[i][j] = 1;
-				}
-				else {
-					LS[i][j] = LS[j][i];
-				}
+	/**
+	 * Calculates similarities for the candidate pairs only (e.g. as found by
+	 * MinHashBlocker); all other pairs are given a similarity of 0
+	 *
+	 * @param activities the activities
+	 * @param candidates for each activity, the indexes of the later activities to
+	 *                   compare it with
+	 */
+	public StringSimilarity(ArrayList<Activity> activities, IntList[] candidates) {
+		this.activities = activities;
+		LS = new SimilarityMatrix(activities.size(), 1);
+		Pattern[] labels = compileLabels();
+		IntStream.range(0, activities.size()).parallel().forEach(i -> {
+			for (int k = 0; k < candidates[i].size(); k++) {
+				int j = candidates[i].getInt(k);
+				LS.set(i, j, 1 - labels[i].normalizedDistance(labels[j]));
 			}
+		});
+	}
+
+	public void computeLabelSimilarity() {
+		Pattern[] labels = compileLabels();
+		LS = SimilarityMatrix.compute(activities.size(), 1,
+				(i, j) -> 1 - labels[i].normalizedDistance(labels[j]));
+	}
+
+	// each label is case-folded and compiled for comparison once
+	private Pattern[] compileLabels() {
+		Pattern[] labels = new Pattern[activities.size()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = BitParallelLevenshtein.compile(activities.get(i).getName(), true);
 		}
+		return labels;
 	}
 
-	public double[][] getSimilarity() {
+	public SimilarityMatrix getSimilarity() {
 		return this.LS;
 	}
 
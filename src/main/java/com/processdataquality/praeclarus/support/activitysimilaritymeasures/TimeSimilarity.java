@@ -17,6 +17,7 @@
 package com.processdataquality.praeclarus.support.activitysimilaritymeasures;
 
 import com.processdataquality.praeclarus.support.logelements.Activity;
+import com.processdataquality.praeclarus.support.math.SimilarityMatrix;
 
 import java.util.ArrayList;
 
@@ -29,27 +30,17 @@ public class TimeSimilarity {
 
 	private ArrayList<Activity> activities;
 	private int nDA;
-	private double[][] TS;
+	private SimilarityMatrix TS;
 
 	public TimeSimilarity(ArrayList<Activity> activities) {
 		this.activities = new ArrayList<Activity>(activities);
 		nDA = activities.size();
-		TS = new double[nDA][nDA];
 		timeSimilarity();
 	}
 
 	public void timeSimilarity() {
-		for (int i = 0; i < nDA; i++) {
-			for (int j = 0; j < nDA; j++) {
-				if (i == j) {
-					TS[i][j] = 1;
-				} else if (j > i) {
-					TS[i][j] = timeSimilarity(activities.get(i), activities.get(j));
-				} else if (i > j) {
-					TS[i][j] = TS[j][i];
-				}
-			}
-		}
+		TS = SimilarityMatrix.compute(nDA, 1,
+				(i, j) -> timeSimilarity(activities.get(i), activities.get(j)));
 	}
 
 	private double timeSimilarity(Activity ad1, Activity ad2) {
@@ -130,7 +121,7 @@ public class TimeSimilarity {
 		return dist;
 	}
 
-	public double[][] getSimilarity() {
+	public SimilarityMatrix getSimilarity() {
 		return TS;
 	}
 
@@ -138,7 +129,7 @@ public class TimeSimilarity {
 		System.out.println("Time Similarity");
 		for (int i = 0; i < nDA; i++) {
 			for (int j = 0; j < nDA; j++) {
-				System.out.print(TS[i][j] + "||");
+				System.out.print(TS.get(i, j) + "||");
 			}
 			System.out.println();
 		}
@@ -22,6 +22,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -35,8 +36,20 @@ import org.deckfour.xes.model.XAttributeTimestamp;
 
 public class Event implements Comparable<Event> {
 
+	/**
+	 * Orders events by their start and complete times. An event comes before
+	 * another if it completes before the other starts (or completes, for events
+	 * without a start); overlapping events are equal
+	 */
+	public static final Comparator<Event> TIME_ORDER = Event::compareTimes;
+
+	// the start time of an event that has no start event
+	private static final long NO_TIME = Long.MIN_VALUE;
+
 	private Row se;
 	private Row ce;
+	private long startTime;                     // epoch milliseconds, or NO_TIME
+	private long completeTime;                  // epoch milliseconds
 	private double duration;
 	private boolean hasDuration;
 	private String cid;
@@ -82,54 +95,36 @@ public class Event implements Comparable<Event> {
 
 	@Override
 	public int compareTo(Event otherEvent) {
-		Date c1 = new Date();
-		Date c2 = new Date();
-		Date s1 = new Date();
-		Date s2 = new Date();
-		LocalDateTime dt1 = ce.getDateTime("time:timestamp");
-		c1 = Date.from(dt1.atZone(ZoneId.systemDefault()).toInstant());
-		LocalDateTime dt2 = otherEvent.getCompleteEvent().getDateTime("time:timestamp");
-		c2 = Date.from(dt2.atZone(ZoneId.systemDefault()).toInstant());
-
-		if (this.se == null) {
-			if (otherEvent.getStartEvent() == null) {
-				if (c1.before(c2))
-					return -1;
-				else if (c1.after(c2))
-					return 1;
-				else
-					return 0;
-			} else {
-				LocalDateTime dt3 = otherEvent.getStartEvent().getDateTime("time:timestamp");
-				s2 = Date.from(dt3.atZone(ZoneId.systemDefault()).toInstant());
-				if (c1.before(s2))
-					return -1;
-				else if (c1.after(c2))
-					return 1;
-				else
-					return 0;
-			}
-		} else {
-			LocalDateTime dt4 = se.getDateTime("time:timestamp");
-			s1 = Date.from(dt4.atZone(ZoneId.systemDefault()).toInstant());
-			if (otherEvent.getStartEvent() == null) {
-				if (c2.before(s1))
-					return 1;
-				else if (c2.after(c1))
-					return -1;
-				else
-					return 0;
-			} else {
-				LocalDateTime dt3 = otherEvent.getStartEvent().getDateTime("time:timestamp");
-				s2 = Date.from(dt3.atZone(ZoneId.systemDefault()).toInstant());
-				if (c1.before(s2))
-					return -1;
-				else if (c2.before(s1))
-					return 1;
-				else
-					return 0;
+		return compareTimes(this, otherEvent);
+	}
+
+	// compares the primitive times captured at construction, so allocates nothing
+	private static int compareTimes(Event e1, Event e2) {
+		long c1 = e1.completeTime;
+		long c2 = e2.completeTime;
+		long s1 = e1.startTime;
+		long s2 = e2.startTime;
+		if (s1 == NO_TIME) {
+			if (s2 == NO_TIME) {
+				return Long.compare(c1, c2);
 			}
+			return c1 < s2 ? -1 : c1 > c2 ? 1 : 0;
+		}
+		if (s2 == NO_TIME) {
+			return c2 < s1 ? 1 : c2 > c1 ? -1 : 0;
 		}
+		return c1 < s2 ? -1 : c2 < s1 ? 1 : 0;
+	}
+
+	/**
+	 * @param row a start or complete event's row
+	 * @return the row's timestamp in epoch milliseconds, taken in the system time
+	 * zone. Milliseconds, as for the Dates events were compared by, so timestamps
+	 * within the same millisecond are equal
+	 */
+	private static long toEpochMillis(Row row) {
+		LocalDateTime dt = row.getDateTime("time:timestamp");
+		return dt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
 	}
 
 	public void setIndexInCase(int i) {
@@ -142,6 +137,12 @@ public class Event implements Comparable<Event> {
 
 	public void setStartEvent(Row se) {
 		this.se = se;
+		this.startTime = se != null ? toEpochMillis(se) : NO_TIME;
+	}
+
+	/** @return the start time in epoch milliseconds, or Long.MIN_VALUE if there is no start event */
+	public long getStartTime() {
+		return startTime;
 	}
 
 	public Row getStartEvent() {
@@ -150,6 +151,12 @@ public class Event implements Comparable<Event> {
 
 	public void setCompleteEvent(Row ce) {
 		this.ce = ce;
+		this.completeTime = toEpochMillis(ce);
+	}
+
+	/** @return the complete time in epoch milliseconds */
+	public long getCompleteTime() {
+		return completeTime;
 	}
 
 	public Row getCompleteEvent() {
@@ -232,13 +239,7 @@ public class Event implements Comparable<Event> {
 			duration = 0;
 			hasDuration = false;
 		} else {
-			Date s = new Date();
-			LocalDateTime dt1 = se.getDateTime("time:timestamp");
-			s = Date.from(dt1.atZone(ZoneId.systemDefault()).toInstant());
-			Date c = new Date();
-			LocalDateTime dt2 = ce.getDateTime("time:timestamp");
-			c = Date.from(dt2.atZone(ZoneId.systemDefault()).toInstant());
-			duration = Math.abs(s.getTime() - c.getTime());
+			duration = Math.abs(startTime - completeTime);    // millis
 			duration = duration / 1000;
 			if (duration == 0)
 				hasDuration = false;
@@ -16,20 +16,36 @@
 
 package com.processdataquality.praeclarus.support.logelements;
 
-import tech.tablesaw.api.Row;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import tech.tablesaw.api.DateTimeColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
+ * Parses a log table into traces of events, grouped by activity.
+ *
+ * The table is read column by column: the columns used are resolved once, resource
+ * names are interned to int codes in a single pass, and rows are grouped into
+ * traces by index. Each trace is then built independently, in parallel, with
+ * start events matched to their completions within the trace. Activities are found
+ * through a hash index on their names.
+ *
  * @author Sareh Sadeghianasl
  * @date 7/1/22
  */
 
 public class ParseTable {
 
+	private static final String LIFECYCLE = "lifecycle:transition";
+	private static final String RESOURCE = "org:resource";
+	private static final String TIMESTAMP = "time:timestamp";
+
 	private ArrayList<Activity> activities = new ArrayList<Activity>();
 	public ArrayList<Trace> traces = new ArrayList<Trace>();
 	private double[] availableHours;
@@ -46,6 +62,12 @@ public class ParseTable {
 	private String selectedColumnName;
 	private String caseIdColumnName;
 
+	// the columns read while parsing, resolved once
+	private Column<?> labels, caseIDs, lifecycles;
+	private DateTimeColumn timestamps;
+	private List<Column<?>> dataColumns;
+	private int[] resourceCodes;
+
 	public ParseTable(Table table, String selectedColumnName, String caseIdColumnName) {
 		this.table = table.sortOn(caseIdColumnName);
 		this.selectedColumnName = selectedColumnName;
@@ -59,180 +81,170 @@ public class ParseTable {
 	}
 
 	public void parse() {
-		List<String> columnNames = table.columnNames();
-		String currentCaseID = "", previousCaseID = "";
-		ArrayList<Event> eventsPerTrace = new ArrayList<Event>();
-		ArrayList<Row> rowList = new ArrayList<Row>();
-		int rIndex = -1;
-		String lifecycle = null;
-		String resource = null;
-		for (Row row : table) {
-			currentCaseID = row.getString(caseIdColumnName);
-			if (!currentCaseID.equalsIgnoreCase(previousCaseID)) {
-				// new trace
-				if (!eventsPerTrace.isEmpty()) {
-					Collections.sort(eventsPerTrace);
-					Trace trace = new Trace(new ArrayList<Event>(eventsPerTrace));
-					addToActivities(eventsPerTrace);
-					eventsPerTrace.clear();
-					traces.add(trace);
-				}
+		labels = table.column(selectedColumnName);
+		caseIDs = table.column(caseIdColumnName);
+		lifecycles = table.columnNames().contains(LIFECYCLE) ? table.column(LIFECYCLE) : null;
+		timestamps = table.dateTimeColumn(TIMESTAMP);
+		dataColumns = new ArrayList<>();
+		for (Column<?> column : table.columns()) {
+			if (column.name().startsWith("data")) {
+				dataColumns.add(column);
 			}
-			if (columnNames.contains("lifecycle:transition")) {
-				lifecycle = row.getString("lifecycle:transition");
+		}
+		internResources();
+
+		// the first row of each trace, and the id of its first event
+		IntArrayList traceStarts = new IntArrayList();
+		IntArrayList firstIDs = new IntArrayList();
+		String previousCaseID = "";
+		for (int row = 0; row < table.rowCount(); row++) {
+			String caseID = caseIDs.getString(row);
+			if (row == 0 || !caseID.equalsIgnoreCase(previousCaseID)) {
+				traceStarts.add(row);
+				firstIDs.add(uniqueID);
 			}
-			if (columnNames.contains("org:resource") && row.getString("org:resource") != null) {
-				resource = row.getString("org:resource");
-				rIndex = addToResources(resource);
-			} else {
-				rIndex = addToResources("");
+			if (isComplete(row)) {
+				uniqueID++;
 			}
-			Event e = null;
-			if (lifecycle != null && lifecycle.equalsIgnoreCase("start")) {
-				rowList.add(row);
-			}else if (lifecycle != null && lifecycle.equalsIgnoreCase("complete")) {
-				int startIndex = findFirstStartEventInTrace(rowList, row, selectedColumnName);
-				if (startIndex != -2) {
-					if (startIndex != -1) { // has start event
-						if(resource!=null) {
-							e = new Event(row.getString(selectedColumnName), rowList.get(startIndex), row, currentCaseID, resource, rIndex, uniqueID);
-						}else if(rowList.get(startIndex).getString("org:resource") != null) {
-							String startResource = rowList.get(startIndex).getString("org:resource");
-							e = new Event(row.getString(selectedColumnName), rowList.get(startIndex), row, currentCaseID, startResource, getResourceIndex(startResource), uniqueID);
+			previousCaseID = caseID;
+		}
+		traceStarts.add(table.rowCount());
 
-						}else {
-							e = new Event(row.getString(selectedColumnName), rowList.get(startIndex), row, currentCaseID, "", rIndex, uniqueID);
-						}
-						setAvailableTimes(e);
-						rowList.remove(startIndex);
-					}
-					else { // no start event
-						if(resource!=null) {
-							e = new Event(row.getString(selectedColumnName), null, row, currentCaseID, resource, rIndex, uniqueID);
-						}else {
-							e = new Event(row.getString(selectedColumnName), null, row, currentCaseID, "", rIndex, uniqueID);
-						}
-						setAvailableTimes(e);
-					}
-					for(String attr: columnNames) {
-						if (attr.startsWith("data")) { 
-							ArrayList<ArrayList<String>> attributes = parseData(row.getString(attr));
-							e.addCompleteAttributes(attributes, ignoreAttrs);
-						}
-					}
-					eventsPerTrace.add(e);
-					uniqueID++;
-				}
-			}
-			else if (lifecycle == null) { // no lifecycle: we assume it as complete
-				if(resource!=null) {
-					e = new Event(row.getString(selectedColumnName), null, row, currentCaseID, resource, rIndex, uniqueID);
-				}else {
-					e = new Event(row.getString(selectedColumnName), null, row, currentCaseID, "", rIndex, uniqueID);
-				}
-				setAvailableTimes(e);
-				for(String attr: columnNames) {
-					if (attr.startsWith("data")) { 
-						ArrayList<ArrayList<String>> attributes = parseData(row.getString(attr));
-						e.addCompleteAttributes(attributes, ignoreAttrs);
-					}
+		List<ArrayList<Event>> eventsPerTrace = IntStream.range(0, firstIDs.size()).parallel()
+				.mapToObj(t -> parseTrace(traceStarts.getInt(t), traceStarts.getInt(t + 1), firstIDs.getInt(t)))
+				.collect(Collectors.toList());
+
+		Map<String, Activity> activityIndex = new HashMap<>();
+		for (ArrayList<Event> events : eventsPerTrace) {
+			if (events.isEmpty()) continue;
+			traces.add(new Trace(new ArrayList<Event>(events)));
+			for (Event event : events) {
+				setAvailableTimes(event);
+				Activity activity = activityIndex.get(event.getName());
+				if (activity == null) {
+					activity = new Activity();
+					activityIndex.put(event.getName(), activity);
+					activities.add(activity);
 				}
-				eventsPerTrace.add(e);
-				uniqueID++;
+				activity.add(event);
 			}
-			previousCaseID = currentCaseID;
 		}
-	
-		for (Activity a : activities) {	
-			a.compute(resources, availableHours, availableDays, availableMonths);
+
+		activities.parallelStream().forEach(
+				a -> a.compute(resources, availableHours, availableDays, availableMonths));
+	}
+
+	// resources are numbered in order of first appearance; "" stands for none
+	private void internResources() {
+		Column<?> column = table.columnNames().contains(RESOURCE) ? table.column(RESOURCE) : null;
+		Object2IntOpenHashMap<String> codes = new Object2IntOpenHashMap<>();
+		codes.defaultReturnValue(-1);
+		resourceCodes = new int[table.rowCount()];
+		for (int row = 0; row < table.rowCount(); row++) {
+			String resource = column != null ? column.getString(row) : "";
+			int code = codes.getInt(resource);
+			if (code == -1) {
+				code = resources.size();
+				codes.put(resource, code);
+				resources.add(resource);
+			}
+			resourceCodes[row] = code;
 		}
-		
 	}
-	
-	private ArrayList<ArrayList<String>> parseData(String data) {
-		ArrayList<ArrayList<String>> res = new ArrayList();
-		StringTokenizer st = new StringTokenizer(data,";");  
-	     while (st.hasMoreTokens()) {  
-	         ArrayList<String> attr = new ArrayList();
-	         StringTokenizer st1 = new StringTokenizer(st.nextToken(),",");
-	         while (st1.hasMoreTokens()) { 
-	        	 attr.add(st1.nextToken());
-	         }
-	         res.add(attr);
-	     }  
-		return res;
+
+	// without a lifecycle column, every row is taken as a completion
+	private boolean isComplete(int row) {
+		return lifecycles == null || lifecycles.getString(row).equalsIgnoreCase("complete");
 	}
 
-	private void addToActivities(ArrayList<Event> eventsPerTrace) {
-		for(Event event: eventsPerTrace) {
-			int eventIndex = eventsPerTrace.indexOf(event);
-			event.setIndexInCase(eventIndex);
-			if (eventIndex != 0) {
-				event.setLastEvent(eventsPerTrace.get(eventIndex - 1));
+	/**
+	 * Builds the events of one trace, from the rows in [first, last). Each completion
+	 * is paired with the earliest unmatched start of the same activity in the trace
+	 *
+	 * @param first   the index of the trace's first row
+	 * @param last    the index after the trace's last row
+	 * @param firstID the id to give the trace's first event
+	 * @return the trace's events, in order
+	 */
+	private ArrayList<Event> parseTrace(int first, int last, int firstID) {
+		ArrayList<Event> events = new ArrayList<Event>();
+		Map<String, IntArrayList> pendingStarts = new HashMap<>();
+		int id = firstID;
+		for (int row = first; row < last; row++) {
+			String name = labels.getString(row);
+			if (lifecycles != null && lifecycles.getString(row).equalsIgnoreCase("start")) {
+				pendingStarts.computeIfAbsent(name, k -> new IntArrayList()).add(row);
+			} else if (isComplete(row)) {
+				int startRow = removeEarliest(pendingStarts.get(name));
+				Event e = new Event(name, startRow > -1 ? table.row(startRow) : null, table.row(row),
+						caseIDs.getString(row), resources.get(resourceCodes[row]), resourceCodes[row], id++);
+				for (Column<?> column : dataColumns) {
+					e.addCompleteAttributes(parseData(column.getString(row)), ignoreAttrs);
+				}
+				events.add(e);
 			}
-			if (eventIndex != eventsPerTrace.size() - 1) {
-				event.setNextEvent(eventsPerTrace.get(eventIndex + 1));
+		}
+
+		events.sort(Event.TIME_ORDER);
+		for (int i = 0; i < events.size(); i++) {
+			Event event = events.get(i);
+			event.setIndexInCase(i);
+			if (i > 0) {
+				event.setLastEvent(events.get(i - 1));
 			}
-			int index = getAvtivityCategoryIndex(event, activities);
-			if (index != -1) {
-				activities.get(index).add(activities.get(index).getEventsNum(), event);
-			} else {
-				Activity newActivity = new Activity();
-				newActivity.add(event);
-				activities.add(newActivity);
+			if (i < events.size() - 1) {
+				event.setNextEvent(events.get(i + 1));
 			}
 		}
-		
+		return events;
 	}
 
-	private void setAvailableTimes(Event event) {
-		Date date = new Date();
-		LocalDateTime dt1 = event.getCompleteEvent().getDateTime("time:timestamp");
-		date = Date.from(dt1.atZone(ZoneId.systemDefault()).toInstant());
-		Calendar cal = Calendar.getInstance();
-		if (date != null) {
-			cal.setTime(date);
-			int hour = cal.get(Calendar.HOUR_OF_DAY);
-			int dw = cal.get(Calendar.DAY_OF_WEEK);
-			int m = cal.get(Calendar.MONTH);
-			if (hour >= 0 && hour < 24) {
-				availableHours[hour]++;
-			}
-			if (dw >= 1 && dw <= 7) {
-				availableDays[dw - 1]++;
-			}
-			if (m >= 0 && m < 12) {
-				availableMonths[m]++;
+	// removes and returns the row with the earliest timestamp, or -1 if none
+	private int removeEarliest(IntArrayList rows) {
+		if (rows == null || rows.isEmpty()) {
+			return -1;
+		}
+		int earliest = 0;
+		for (int i = 1; i < rows.size(); i++) {
+			if (timestamps.get(rows.getInt(i)).isBefore(timestamps.get(rows.getInt(earliest)))) {
+				earliest = i;
 			}
 		}
+		return rows.removeInt(earliest);
 	}
 
-	private int addToResources(String resource) {
-		for (String r : resources) {
-			if (r.equals(resource)) {
-				return resources.indexOf(r);
-			}
+	// "type,key,value;type,key,value;..." - empty tokens are skipped
+	private ArrayList<ArrayList<String>> parseData(String data) {
+		ArrayList<ArrayList<String>> res = new ArrayList<>();
+		for (String attribute : tokens(data, ';')) {
+			res.add(tokens(attribute, ','));
 		}
-		resources.add(resource);
-		return resources.indexOf(resource);
+		return res;
 	}
 
-	private int getResourceIndex(String resource) {
-		for (String r : resources) {
-			if (r.equals(resource)) {
-				return resources.indexOf(r);
+	private ArrayList<String> tokens(String s, char delimiter) {
+		ArrayList<String> tokens = new ArrayList<>();
+		int start = 0;
+		while (start <= s.length()) {
+			int end = s.indexOf(delimiter, start);
+			if (end == -1) {
+				end = s.length();
+			}
+			if (end > start) {
+				tokens.add(s.substring(start, end));
 			}
+			start = end + 1;
 		}
-		return -1;
+		return tokens;
 	}
 
-	public int getAvtivityCategoryIndex(Event event, ArrayList<Activity> acts) {
-		for (Activity ea : acts) {
-			if (ea.getName().equals(event.getName())) {
-				return acts.indexOf(ea);
-			}
+	private void setAvailableTimes(Event event) {
+		LocalDateTime dt = timestamps.get(event.getCompleteEvent().getRowNumber());
+		if (dt != null) {
+			availableHours[dt.getHour()]++;
+			availableDays[dt.getDayOfWeek().getValue() % 7]++;     // Sunday first
+			availableMonths[dt.getMonthValue() - 1]++;
 		}
-		return -1;
 	}
 
 	public ArrayList<Activity> getActivities() {
@@ -247,35 +259,8 @@ public class ParseTable {
 		return activities.size();
 	}
 
-	public int findFirstStartEventInTrace(ArrayList<Row> events, Row row, String activityColumnName) {
-		String name = "";
-		name = row.getString(activityColumnName);
-		if (name == null) {
-			return -2;
-		}
-		int minTimeIndex = -1;
-		Date minDate = new Date();
-		minDate.setTime(Long.MAX_VALUE);
-		for (Row ev : events) {
-			String na = "";
-			na = ev.getString(activityColumnName);
-			if (na.equals(name)) {
-				LocalDateTime dt = ev.getDateTime("time:timestamp");
-				Date d = Date.from(dt.atZone(ZoneId.systemDefault()).toInstant());
-				if (d.before(minDate)) {
-					minDate = d;
-					minTimeIndex = events.indexOf(ev);
-				}
-			}
-		}
-		return minTimeIndex;
-
-	}
-	
 	public int getNumberOfEvents() {
 		return this.uniqueID;
 	}
-	
-	
 
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.math;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein distance by Myers' bit-parallel algorithm, in Hyyro's formulation for
+ * edit distance. Each column of the dynamic programming matrix is held as bit
+ * vectors of its vertical differences, so a character of the text is processed
+ * with a handful of word operations per 64 characters of the pattern, rather than
+ * one operation per cell. Patterns longer than 64 characters are split into blocks
+ * of 64, with the horizontal differences carried from block to block.
+ *
+ * A string is compiled once into a Pattern (optionally case-folded), which can then
+ * be compared with any number of other strings. A threshold may be given, beyond
+ * which the calculation stops early. Working space is kept per thread and reused,
+ * so comparisons allocate nothing, and a pattern may be shared between threads.
+ */
+public final class BitParallelLevenshtein {
+
+    private static final long HIGH_BIT = 0x8000000000000000L;
+
+    // per thread: the vertical difference vectors of multi-block patterns
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[8]);
+
+    private BitParallelLevenshtein() { }
+
+
+    /**
+     * @param s a string
+     * @param ignoreCase if true, the string is lower-cased before compiling
+     * @return the compiled pattern
+     */
+    public static Pattern compile(String s, boolean ignoreCase) {
+        return new Pattern(ignoreCase ? s.toLowerCase() : s);
+    }
+
+
+    /**
+     * @return the Levenshtein distance between two strings
+     */
+    public static int distance(String a, String b) {
+        return distance(a, b, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @param threshold the largest distance of interest
+     * @return the Levenshtein distance between two strings, or -1 if it is greater
+     * than the threshold
+     */
+    public static int distance(String a, String b, int threshold) {
+        if (a.length() > b.length()) {                   // shorter pattern, fewer blocks
+            String s = a;
+            a = b;
+            b = s;
+        }
+        return new Pattern(a).distance(b, threshold);
+    }
+
+
+    /**
+     * @return the Levenshtein distance between two strings divided by the length of
+     * the longer one
+     */
+    public static double normalizedDistance(String a, String b) {
+        double d = distance(a, b);
+        return d / Math.max(a.length(), b.length());
+    }
+
+
+    /**
+     * A compiled string: for each distinct character, a bit vector of the positions
+     * at which it occurs
+     */
+    public static final class Pattern {
+
+        private final String _text;
+        private final int _blocks;
+
+        // open addressing: distinct characters (-1 if the slot is empty) and, for
+        // each slot, a bit vector per block
+        private final int[] _chars;
+        private final long[] _vectors;
+        private final int _mask;
+
+
+        private Pattern(String text) {
+            _text = text;
+            _blocks = Math.max(1, (text.length() + 63) >>> 6);
+            int slots = Integer.highestOneBit(Math.max(2, text.length()) * 2 - 1) << 1;
+            _chars = new int[slots];
+            Arrays.fill(_chars, -1);
+            _vectors = new long[slots * _blocks];
+            _mask = slots - 1;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int slot = hash(c) & _mask;
+                while (_chars[slot] != -1 && _chars[slot] != c) {
+                    slot = (slot + 1) & _mask;
+                }
+                _chars[slot] = c;
+                _vectors[slot * _blocks + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+
+
+        /** @return the (possibly case-folded) string compiled */
+        public String getText() { return _text; }
+
+        public int length() { return _text.length(); }
+
+
+        /** @return the Levenshtein distance between this and another pattern */
+        public int distance(Pattern other) {
+            return distance(other._text, Integer.MAX_VALUE);
+        }
+
+
+        /**
+         * @param threshold the largest distance of interest
+         * @return the Levenshtein distance between this and another pattern, or -1
+         * if it is greater than the threshold
+         */
+        public int distance(Pattern other, int threshold) {
+            return distance(other._text, threshold);
+        }
+
+
+        /**
+         * @return the Levenshtein distance between this and another pattern divided
+         * by the length of the longer one
+         */
+        public double normalizedDistance(Pattern other) {
+            double d = distance(other);
+            return d / Math.max(length(), other.length());
+        }
+
+
+        /**
+         * @param text a string
+         * @param threshold the largest distance of interest
+         * @return the Levenshtein distance between this pattern and the string, or -1
+         * if it is greater than the threshold
+         */
+        public int distance(CharSequence text, int threshold) {
+            int m = _text.length();
+            int n = text.length();
+            if (Math.abs(m - n) > threshold) return -1;
+            if (m == 0) return n;
+            if (n == 0) return m;
+            return _blocks == 1 ? singleBlock(text, threshold) : multiBlock(text, threshold);
+        }
+
+
+        private int singleBlock(CharSequence text, int threshold) {
+            int n = text.length();
+            long last = 1L << (_text.length() - 1);
+            long pv = -1L;
+            long mv = 0;
+            int score = _text.length();
+            for (int j = 0; j < n; j++) {
+                int slot = slotOf(text.charAt(j));
+                long eq = slot < 0 ? 0 : _vectors[slot];
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                }
+                else if ((mh & last) != 0) {
+                    score--;
+                }
+                ph = (ph << 1) | 1;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+
+                // each remaining character can lower the score by at most one
+                if (score - (n - j - 1) > threshold) return -1;
+            }
+            return score <= threshold ? score : -1;
+        }
+
+
+        private int multiBlock(CharSequence text, int threshold) {
+            int n = text.length();
+            long[] v = scratch(_blocks * 2);                 // pv per block, then mv
+            Arrays.fill(v, 0, _blocks, -1L);
+            Arrays.fill(v, _blocks, _blocks * 2, 0);
+            long last = 1L << ((_text.length() - 1) & 63);
+            int score = _text.length();
+            for (int j = 0; j < n; j++) {
+                int slot = slotOf(text.charAt(j));
+                int hin = 1;                                 // top row increases by 1
+                for (int b = 0; b < _blocks; b++) {
+                    long eq = slot < 0 ? 0 : _vectors[slot * _blocks + b];
+                    long pv = v[b];
+                    long mv = v[_blocks + b];
+                    long xv = eq | mv;
+                    if (hin < 0) eq |= 1;
+                    long xh = (((eq & pv) + pv) ^ pv) | eq;
+                    long ph = mv | ~(xh | pv);
+                    long mh = pv & xh;
+                    long high = b == _blocks - 1 ? last : HIGH_BIT;
+                    int hout = (ph & high) != 0 ? 1 : (mh & high) != 0 ? -1 : 0;
+                    ph <<= 1;
+                    mh <<= 1;
+                    if (hin < 0) {
+                        mh |= 1;
+                    }
+                    else if (hin > 0) {
+                        ph |= 1;
+                    }
+                    v[b] = mh | ~(xv | ph);
+                    v[_blocks + b] = ph & xv;
+                    hin = hout;
+                }
+                score += hin;
+                if (score - (n - j - 1) > threshold) return -1;
+            }
+            return score <= threshold ? score : -1;
+        }
+
+
+        private int slotOf(char c) {
+            int slot = hash(c) & _mask;
+            int stored;
+            while ((stored = _chars[slot]) != -1) {
+                if (stored == c) return slot;
+                slot = (slot + 1) & _mask;
+            }
+            return -1;
+        }
+
+
+        private static int hash(char c) {
+            return (c * 0x9E3779B1) >>> 16;
+        }
+    }
+
+
+    private static long[] scratch(int size) {
+        long[] scratch = SCRATCH.get();
+        if (scratch.length < size) {
+            scratch = new long[Math.max(size, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.math;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.List;
+
+/**
+ * An index over a list of strings that, for a given string, finds those that could
+ * be within a Levenshtein distance threshold of it, without comparing it to all of
+ * them. Candidates still need to be verified with a (bounded) distance calculation,
+ * but no string within the threshold is ever missed.
+ *
+ * Two filters are applied. The length filter: strings within distance k differ in
+ * length by at most k. The q-gram count filter: each edit destroys at most q of a
+ * string's q-grams, so strings x and y within distance k share at least
+ * max(|x|, |y|) - q + 1 - kq q-grams (counted as multisets). Strings are found by
+ * their shared q-grams through an inverted index; where the bound is zero or less
+ * (short strings, or a large threshold) every string of a suitable length is a
+ * candidate.
+ *
+ * The index is safe to query concurrently.
+ */
+public class LevenshteinIndex {
+
+    private static final int Q = 2;
+
+    private final List<String> _strings;
+    private final int _threshold;
+    private final int[] _lengths;
+
+    // q-gram -> ascending pairs of (string index, occurrences of the q-gram in it)
+    private final Int2ObjectOpenHashMap<IntArrayList> _postings = new Int2ObjectOpenHashMap<>();
+
+    // length -> ascending string indexes
+    private final Int2ObjectOpenHashMap<IntArrayList> _byLength = new Int2ObjectOpenHashMap<>();
+
+    private final ThreadLocal<Scratch> _scratch;
+
+
+    /**
+     * @param strings the strings to index
+     * @param threshold the maximum distance of interest
+     */
+    public LevenshteinIndex(List<String> strings, int threshold) {
+        _strings = strings;
+        _lengths = new int[strings.size()];
+        int maxLength = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            String s = strings.get(i);
+            _lengths[i] = s.length();
+            maxLength = Math.max(maxLength, s.length());
+            _byLength.computeIfAbsent(s.length(), l -> new IntArrayList()).add(i);
+            for (Int2IntMap.Entry gram : qGrams(s).int2IntEntrySet()) {
+                IntArrayList posting = _postings.computeIfAbsent(gram.getIntKey(),
+                        g -> new IntArrayList());
+                posting.add(i);
+                posting.add(gram.getIntValue());
+            }
+        }
+
+        // no two strings are further apart than the longest string's length
+        _threshold = Math.min(threshold, maxLength);
+        _scratch = ThreadLocal.withInitial(() -> new Scratch(strings.size()));
+    }
+
+
+    /**
+     * Finds the strings that may be within the threshold of a string. To visit
+     * each pair once, only strings later in the list are returned
+     * @param index the index of the string in the list
+     * @return the ascending indexes of the later strings that may be within the
+     * threshold
+     */
+    public IntList candidates(int index) {
+        int length = _lengths[index];
+        Scratch scratch = _scratch.get();
+        IntArrayList result = new IntArrayList();
+
+        // count the q-grams shared with each later string of a suitable length
+        for (Int2IntMap.Entry gram : qGrams(_strings.get(index)).int2IntEntrySet()) {
+            IntArrayList posting = _postings.get(gram.getIntKey());
+            for (int k = firstAfter(posting, index); k < posting.size(); k += 2) {
+                int other = posting.getInt(k);
+                if (Math.abs(length - _lengths[other]) > _threshold) continue;
+                if (scratch.shared[other] == 0) scratch.touched.add(other);
+                scratch.shared[other] += Math.min(gram.getIntValue(), posting.getInt(k + 1));
+            }
+        }
+        for (int k = 0; k < scratch.touched.size(); k++) {
+            int other = scratch.touched.getInt(k);
+            int bound = minSharedGrams(length, _lengths[other]);
+            if (bound > 0 && scratch.shared[other] >= bound) result.add(other);
+            scratch.shared[other] = 0;
+        }
+        scratch.touched.clear();
+
+        // where the bound gives no filtering, every string of the length qualifies
+        for (int l = Math.max(0, length - _threshold); l <= length + _threshold; l++) {
+            IntArrayList sameLength = _byLength.get(l);
+            if (sameLength == null || minSharedGrams(length, l) > 0) continue;
+            for (int k = firstAfter(sameLength, index, 1); k < sameLength.size(); k++) {
+                result.add(sameLength.getInt(k));
+            }
+        }
+
+        IntArrays.quickSort(result.elements(), 0, result.size());
+        return result;
+    }
+
+
+    // the fewest q-grams two strings within the threshold can share
+    private int minSharedGrams(int length1, int length2) {
+        return Math.max(length1, length2) - Q + 1 - _threshold * Q;
+    }
+
+
+    // the position in a posting list of the first string after the given index
+    private int firstAfter(IntArrayList list, int index) {
+        return firstAfter(list, index, 2) * 2;
+    }
+
+
+    // binary search over a list of ascending indexes, each taking 'stride' slots
+    private int firstAfter(IntArrayList list, int index, int stride) {
+        int low = 0;
+        int high = list.size() / stride;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (list.getInt(mid * stride) <= index) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    // the q-grams of a string, each packed into an int, with their occurrences
+    private static Int2IntOpenHashMap qGrams(String s) {
+        Int2IntOpenHashMap grams = new Int2IntOpenHashMap();
+        for (int i = 0; i + Q <= s.length(); i++) {
+            grams.addTo((s.charAt(i) << 16) | s.charAt(i + 1), 1);
+        }
+        return grams;
+    }
+
+
+    // per-thread working space for counting shared q-grams
+    private static class Scratch {
+        final int[] shared;
+        final IntArrayList touched = new IntArrayList();
+
+        Scratch(int size) { shared = new int[size]; }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.math;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Blocking for similarity comparisons over very large sets of strings: rather than
+ * comparing every pair, only pairs likely to be similar are proposed as candidates.
+ *
+ * Each string is reduced to its set of character shingles (substrings of a fixed
+ * length, with the string padded at each end), and a MinHash signature of that set
+ * is taken - for two strings, the chance that any one signature value agrees is
+ * their Jaccard similarity. Signatures are cut into bands of rows, and strings that
+ * agree on all rows of any band become candidates (locality sensitive hashing). A
+ * pair with Jaccard similarity s is therefore proposed with probability
+ * 1 - (1 - s^r)^b, for b bands of r rows: more bands raise recall, more rows raise
+ * precision. Since blocking can miss pairs, estimateRecall() measures how many true
+ * matches it finds against an exhaustive comparison of a sample.
+ *
+ * A bucket holding more than a maximum number of strings would cost a quadratic
+ * number of pairs (it arises from very short strings, or bands of too few rows), so
+ * it is split into sub-buckets on the rows of the following bands in turn, until
+ * each is within the maximum. Its strings then pair only with those that also agree
+ * on the further bands, i.e. the most similar of them. A bucket whose strings agree
+ * on every band yet still exceed the maximum proposes no pairs; such buckets are
+ * counted, and reported by getSkippedBuckets() and getSkippedStrings().
+ */
+public class MinHashBlocker {
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final char PAD = '\u0002';
+    private static final int DEFAULT_MAX_BUCKET_SIZE = 1000;
+
+    private final int _bands;
+    private final int _rows;
+    private final long[] _seeds;
+    private final int _maxBucketSize;
+
+    // the buckets of the last call to candidates() that proposed no pairs
+    private final LongAdder _skippedBuckets = new LongAdder();
+    private final LongAdder _skippedStrings = new LongAdder();
+
+
+    /**
+     * @param bands the number of bands
+     * @param rows the number of signature values in each band
+     */
+    public MinHashBlocker(int bands, int rows) {
+        this(bands, rows, 42, DEFAULT_MAX_BUCKET_SIZE);
+    }
+
+
+    /**
+     * @param bands the number of bands
+     * @param rows the number of signature values in each band
+     * @param seed seeds the hash functions
+     * @param maxBucketSize the most strings a bucket may hold and still propose pairs
+     */
+    public MinHashBlocker(int bands, int rows, long seed, int maxBucketSize) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("Bands and rows must be at least 1");
+        }
+        if (maxBucketSize < 2) {
+            throw new IllegalArgumentException("Max bucket size must be at least 2");
+        }
+        _bands = bands;
+        _rows = rows;
+        _seeds = new Random(seed).longs(bands * rows).toArray();
+        _maxBucketSize = maxBucketSize;
+    }
+
+
+    /**
+     * @param jaccard the Jaccard similarity of two strings' shingle sets
+     * @return the probability that the two strings become candidates
+     */
+    public double candidateProbability(double jaccard) {
+        return 1 - Math.pow(1 - Math.pow(jaccard, _rows), _bands);
+    }
+
+
+    /**
+     * Finds the candidate pairs among a list of strings
+     * @param strings the strings
+     * @return for each string (by index), the ascending indexes of the later
+     * strings it is paired with
+     */
+    public IntList[] candidates(List<String> strings) {
+        _skippedBuckets.reset();
+        _skippedStrings.reset();
+        int size = strings.size();
+        long[][] signatures = new long[size][];
+        IntStream.range(0, size).parallel().forEach(
+                i -> signatures[i] = signature(strings.get(i)));
+
+        LongOpenHashSet pairs = new LongOpenHashSet();
+        IntStream.range(0, _bands).parallel()
+                .mapToObj(band -> bandPairs(signatures, band))
+                .forEach(bandPairs -> {
+                    synchronized (pairs) {
+                        pairs.addAll(bandPairs);
+                    }
+                });
+
+        IntList[] candidates = new IntList[size];
+        for (int i = 0; i < size; i++) {
+            candidates[i] = new IntArrayList();
+        }
+        pairs.forEach((long pair) -> candidates[(int) (pair >>> 32)].add((int) pair));
+        for (IntList list : candidates) {
+            IntArrays.quickSort(((IntArrayList) list).elements(), 0, list.size());
+        }
+        return candidates;
+    }
+
+
+    /**
+     * Estimates the recall of blocking: the fraction of truly matching pairs that
+     * are among the candidates. A random sample of the strings is each compared
+     * with every other string, and the matches found are looked up in the
+     * candidates
+     * @param strings the strings
+     * @param candidates the candidates found for the strings
+     * @param matcher the exhaustive test of whether two strings match
+     * @param sampleSize the number of strings to sample
+     * @return the estimated recall, or NaN if there are no strings to sample or the
+     * sample contains no matches
+     */
+    public double estimateRecall(List<String> strings, IntList[] candidates,
+                                 BiPredicate<String, String> matcher, int sampleSize) {
+        int size = strings.size();
+        if (size == 0 || sampleSize <= 0) return Double.NaN;
+        int[] sample = new Random(_seeds[0]).ints(0, size).distinct()
+                .limit(Math.min(sampleSize, size)).toArray();
+        long[] counts = IntStream.of(sample).parallel().mapToObj(i -> {
+            long found = 0;
+            long matched = 0;
+            for (int j = 0; j < size; j++) {
+                if (i != j && matcher.test(strings.get(i), strings.get(j))) {
+                    matched++;
+                    int first = Math.min(i, j);
+                    int second = Math.max(i, j);
+                    IntArrayList list = (IntArrayList) candidates[first];
+                    if (IntArrays.binarySearch(list.elements(), 0, list.size(), second) >= 0) {
+                        found++;
+                    }
+                }
+            }
+            return new long[] { found, matched };
+        }).reduce(new long[2], (a, b) -> new long[] { a[0] + b[0], a[1] + b[1] });
+        return counts[1] > 0 ? (double) counts[0] / counts[1] : Double.NaN;
+    }
+
+
+    /**
+     * @return the number of buckets in the last call to candidates() that were too
+     * large to propose pairs, even when split on every band
+     */
+    public long getSkippedBuckets() { return _skippedBuckets.sum(); }
+
+
+    /**
+     * @return the number of strings in the buckets counted by getSkippedBuckets(); a
+     * string is counted once for each band in which its bucket was skipped
+     */
+    public long getSkippedStrings() { return _skippedStrings.sum(); }
+
+
+    // the pairs of strings whose signatures agree on every row of a band
+    private LongArrayList bandPairs(long[][] signatures, int band) {
+        Long2ObjectOpenHashMap<IntArrayList> buckets = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < signatures.length; i++) {
+            buckets.computeIfAbsent(bandKey(signatures[i], band), k -> new IntArrayList()).add(i);
+        }
+
+        LongArrayList pairs = new LongArrayList();
+        for (IntArrayList bucket : buckets.values()) {
+            addBucketPairs(signatures, bucket, band, 0, pairs);
+        }
+        return pairs;
+    }
+
+
+    // adds the pairs of a bucket of strings that agree on a band and on the 'depth'
+    // bands after it, splitting it on the next band if it is oversized
+    private void addBucketPairs(long[][] signatures, IntArrayList bucket, int band, int depth,
+                                LongArrayList pairs) {
+        if (bucket.size() <= _maxBucketSize) {
+            for (int a = 0; a < bucket.size(); a++) {
+                for (int b = a + 1; b < bucket.size(); b++) {
+                    pairs.add(((long) bucket.getInt(a) << 32) | bucket.getInt(b));
+                }
+            }
+            return;
+        }
+        if (depth == _bands - 1) {                        // no band left to split on
+            _skippedBuckets.increment();
+            _skippedStrings.add(bucket.size());
+            return;
+        }
+        int nextBand = (band + depth + 1) % _bands;
+        Long2ObjectOpenHashMap<IntArrayList> subBuckets = new Long2ObjectOpenHashMap<>();
+        for (int k = 0; k < bucket.size(); k++) {
+            int i = bucket.getInt(k);
+            subBuckets.computeIfAbsent(bandKey(signatures[i], nextBand),
+                    key -> new IntArrayList()).add(i);
+        }
+        for (IntArrayList subBucket : subBuckets.values()) {
+            if (subBucket.size() > 1) {
+                addBucketPairs(signatures, subBucket, band, depth + 1, pairs);
+            }
+        }
+    }
+
+
+    // a hash of a signature's values in a band
+    private long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int r = band * _rows; r < (band + 1) * _rows; r++) {
+            key = mix(key * 31 + signature[r]);
+        }
+        return key;
+    }
+
+
+    // the minimum of each hash function over the string's shingles
+    private long[] signature(String s) {
+        long[] signature = new long[_seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        String padded = PAD + s + PAD;
+        for (int i = 0; i + SHINGLE_SIZE <= padded.length(); i++) {
+            long shingle = 0;
+            for (int k = i; k < i + SHINGLE_SIZE; k++) {
+                shingle = (shingle << 16) | padded.charAt(k);
+            }
+            for (int h = 0; h < _seeds.length; h++) {
+                long value = mix(shingle ^ _seeds[h]);
+                if (value < signature[h]) signature[h] = value;
+            }
+        }
+        return signature;
+    }
+
+
+    // the murmur3 64-bit finaliser
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.support.math;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A symmetric matrix of pairwise similarities between n items. Only the cells above
+ * the diagonal are stored, packed row by row into a single array of n(n-1)/2
+ * doubles, so the matrix takes less than half the memory of a double[n][n]. The
+ * diagonal holds a single value (usually 1, an item being identical to itself).
+ *
+ * Matrices are normally built by compute(), which evaluates a similarity function
+ * for each pair once, with the rows shared among the available cores.
+ */
+public class SimilarityMatrix {
+
+    /**
+     * Calculates the similarity of a pair of items, by their indexes. Called
+     * concurrently, and only for i < j
+     */
+    @FunctionalInterface
+    public interface PairFunction {
+        double apply(int i, int j);
+    }
+
+
+    private final int _size;
+    private final double _diagonal;
+    private final double[] _values;              // null if every cell has one value
+    private final double _fill;
+
+
+    /**
+     * Creates a matrix with every cell off the diagonal set to 0
+     * @param size the number of items
+     * @param diagonal the similarity of each item to itself
+     */
+    public SimilarityMatrix(int size, double diagonal) {
+        this(size, diagonal, new double[(int) cellCount(size)], 0);
+    }
+
+
+    private SimilarityMatrix(int size, double diagonal, double[] values, double fill) {
+        _size = size;
+        _diagonal = diagonal;
+        _values = values;
+        _fill = fill;
+    }
+
+
+    /**
+     * Builds a matrix by calculating the similarity of each pair of items in
+     * parallel
+     * @param size the number of items
+     * @param diagonal the similarity of each item to itself
+     * @param function calculates the similarity of items i and j, for i < j
+     * @return the matrix
+     */
+    public static SimilarityMatrix compute(int size, double diagonal, PairFunction function) {
+        SimilarityMatrix matrix = new SimilarityMatrix(size, diagonal);
+        IntStream.range(0, Math.max(0, size - 1)).parallel().forEach(i -> {
+            int offset = matrix.rowOffset(i);
+            for (int j = i + 1; j < size; j++) {
+                matrix._values[offset + j] = function.apply(i, j);
+            }
+        });
+        return matrix;
+    }
+
+
+    /**
+     * Creates a read-only matrix in which every pair has the same similarity, using
+     * no storage per cell
+     * @param size the number of items
+     * @param diagonal the similarity of each item to itself
+     * @param value the similarity of every other pair
+     * @return the matrix
+     */
+    public static SimilarityMatrix constant(int size, double diagonal, double value) {
+        return new SimilarityMatrix(size, diagonal, null, value);
+    }
+
+
+    /**
+     * Copies a full square matrix, which is assumed to be symmetric
+     * @param matrix the matrix to copy
+     * @param diagonal the similarity of each item to itself
+     * @return the packed matrix
+     */
+    public static SimilarityMatrix of(double[][] matrix, double diagonal) {
+        return compute(matrix.length, diagonal, (i, j) -> matrix[i][j]);
+    }
+
+
+    /** @return the number of items */
+    public int size() { return _size; }
+
+
+    /** @return the approximate memory taken by the matrix's cells */
+    public long getBytes() {
+        return _values != null ? 8L * _values.length : 0;
+    }
+
+
+    /**
+     * @return the similarity of items i and j (in either order)
+     */
+    public double get(int i, int j) {
+        if (i == j) return _diagonal;
+        if (_values == null) return _fill;
+        return i < j ? _values[rowOffset(i) + j] : _values[rowOffset(j) + i];
+    }
+
+
+    /**
+     * Sets the similarity of items i and j (in either order)
+     * @throws IllegalArgumentException if i == j
+     * @throws UnsupportedOperationException if the matrix is constant
+     */
+    public void set(int i, int j, double value) {
+        if (i == j) throw new IllegalArgumentException("Cannot set the diagonal");
+        if (_values == null) throw new UnsupportedOperationException("Constant matrix");
+        if (i < j) {
+            _values[rowOffset(i) + j] = value;
+        }
+        else {
+            _values[rowOffset(j) + i] = value;
+        }
+    }
+
+
+    /**
+     * @return a full square copy of the matrix
+     */
+    public double[][] toArray() {
+        double[][] array = new double[_size][_size];
+        for (int i = 0; i < _size; i++) {
+            if (_values == null) Arrays.fill(array[i], _fill);
+            for (int j = i + 1; j < _size && _values != null; j++) {
+                array[i][j] = _values[rowOffset(i) + j];
+                array[j][i] = array[i][j];
+            }
+            array[i][i] = _diagonal;
+        }
+        return array;
+    }
+
+
+    // row i holds cells (i, i+1) .. (i, n-1); this offset is added to j
+    private int rowOffset(int i) {
+        return (int) ((long) i * (2L * _size - i - 1) / 2 - i - 1);
+    }
+
+
+    private static long cellCount(int size) {
+        long cells = (long) size * (size - 1) / 2;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many items for a similarity matrix: " + size);
+        }
+        return Math.max(0, cells);
+    }
+
+}
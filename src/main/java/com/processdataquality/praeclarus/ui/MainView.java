@@ -16,6 +16,7 @@
 
 package com.processdataquality.praeclarus.ui;
 
+import com.processdataquality.praeclarus.config.RunnerConfig;
 import com.processdataquality.praeclarus.security.SecurityService;
 import com.processdataquality.praeclarus.ui.component.OutputPanel;
 import com.processdataquality.praeclarus.ui.component.PluginsPanel;
@@ -54,11 +55,11 @@ public class MainView extends VerticalLayout {
     private final WorkflowPanel _workflowPanel;
 
 
-    public MainView(SecurityService service) {
+    public MainView(SecurityService service, RunnerConfig runnerConfig) {
         setId("mainview");
         _securityService = service;
         _propsPanel = new PropertiesPanel(this);
-        _workflowPanel = new WorkflowPanel(this);
+        _workflowPanel = new WorkflowPanel(this, runnerConfig.getMaxConcurrency());
         SplitLayout masterLayout = new SplitLayout();
         masterLayout.addToPrimary(leftPanel());
         masterLayout.addToSecondary(centrePanel());
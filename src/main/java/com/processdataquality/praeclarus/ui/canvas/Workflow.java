@@ -21,11 +21,13 @@ import com.eclipsesource.json.JsonObject;
 import com.processdataquality.praeclarus.graph.Graph;
 import com.processdataquality.praeclarus.logging.EventLogger;
 import com.processdataquality.praeclarus.node.Node;
+import com.processdataquality.praeclarus.node.NodeState;
 import com.processdataquality.praeclarus.node.NodeStateChangeListener;
 import com.processdataquality.praeclarus.ui.component.WorkflowPanel;
 import com.processdataquality.praeclarus.ui.component.announce.Announcement;
 import com.processdataquality.praeclarus.ui.component.dialog.VertexLabelDialog;
 import com.processdataquality.praeclarus.ui.repo.WorkflowStore;
+import com.processdataquality.praeclarus.ui.util.UiUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,20 +154,25 @@ public class Workflow implements CanvasEventListener, NodeStateChangeListener {
 
     @Override
     public void nodeStateChanged(Node node) throws Exception {
-        switch (node.getState()) {
-            case UNSTARTED:
-                changeStateIndicator(node, VertexStateIndicator.State.DORMANT);
-                break;
-            case EXECUTING:
-                changeStateIndicator(node, VertexStateIndicator.State.RUNNING);
-                break;
-            case PAUSED:
-                changeStateIndicator(node, VertexStateIndicator.State.PAUSED);
-                break;
-            case COMPLETED:
-                changeStateIndicator(node, VertexStateIndicator.State.COMPLETED);
-                break;
-        }
+        NodeState state = node.getState();     // may change again before access runs
+        UiUtil.access(_container, () -> {
+            switch (state) {
+                case UNSTARTED:
+                    changeStateIndicator(node, VertexStateIndicator.State.DORMANT);
+                    break;
+                case EXECUTING:
+                    changeStateIndicator(node, VertexStateIndicator.State.RUNNING);
+                    break;
+                case PAUSED:
+                    changeStateIndicator(node, VertexStateIndicator.State.PAUSED);
+                    break;
+                case COMPLETED:
+                    if (node.hasOutput()) {            // unless reset in the meantime
+                        changeStateIndicator(node, VertexStateIndicator.State.COMPLETED);
+                    }
+                    break;
+            }
+        });
     }
 
 
@@ -19,6 +19,7 @@ package com.processdataquality.praeclarus.ui.component;
 import com.processdataquality.praeclarus.logging.EventLogger;
 import com.processdataquality.praeclarus.logging.LogEventListener;
 import com.processdataquality.praeclarus.logging.entity.*;
+import com.processdataquality.praeclarus.ui.util.UiUtil;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.textfield.TextArea;
@@ -48,7 +49,8 @@ public class EventsPanel extends Div implements LogEventListener {
 
     @Override
     public void eventLogged(AbstractLogEvent event) {
-        ta.setValue(getEventLine(event) + "\n" + ta.getValue());
+        String line = getEventLine(event);
+        UiUtil.access(ta, () -> ta.setValue(line + "\n" + ta.getValue()));
     }
 
 
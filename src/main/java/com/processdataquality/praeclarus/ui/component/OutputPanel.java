@@ -33,6 +33,7 @@ import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.Html;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Div;
@@ -97,7 +98,7 @@ public class OutputPanel extends VerticalLayout
     @Override
     public void runnerStateChanged(GraphRunner.RunnerState newState) {
         if (newState == GraphRunner.RunnerState.IDLE) {
-            enableButtons();
+            UiUtil.access(this, this::enableButtons);
         }
     }
 
@@ -271,15 +272,15 @@ public class OutputPanel extends VerticalLayout
                     setTitle("Show Dataset Differences");
                     Node prevNode = getPreviousDatasetNode(node);
                     if (prevNode != null) {
-                        String dataset = getDatasetFromRepo(node);
-                        String prevDataset = getDatasetFromRepo(prevNode);
-                        List<Table> diffList = new Differ().diff(dataset, prevDataset);
+                        Table dataset = getDatasetFromRepo(node);
+                        Table prevDataset = getDatasetFromRepo(prevNode);
                         VerticalLayout outerLayout = new VerticalLayout();
-                        VerticalLayout prevLayout = createDiffTableLayout(diffList.get(0), prevNode.getLabel());
-                        VerticalLayout currLayout = createDiffTableLayout(diffList.get(1), node.getLabel());
-                        outerLayout.add(prevLayout, currLayout);
-                        outerLayout.setFlexGrow(1, prevLayout, currLayout);
-                        page.add(outerLayout);
+                        ComboBox<String> keyBox = createDiffKeySelector(dataset, prevDataset);
+                        keyBox.addValueChangeListener(e -> showDiffTables(outerLayout,
+                                dataset, prevDataset, e.getValue(), node, prevNode));
+                        showDiffTables(outerLayout, dataset, prevDataset,
+                                keyBox.getValue(), node, prevNode);
+                        page.add(keyBox, outerLayout);
                     }
                     else page.add(new Html("<p>The selected node has no previous nodes to compare to</p>"));
                 }
@@ -314,10 +315,10 @@ public class OutputPanel extends VerticalLayout
     }
 
 
-    private String getDatasetFromRepo(Node node) throws IOException {
+    private Table getDatasetFromRepo(Node node) throws IOException {
         String tableName = node.getTableID();
         if (tableName != null) {
-            return Repo.fetchContent(node.getCommitID(), tableName);
+            return Repo.getTable(node.getCommitID(), tableName);
         }
         throw new IOException("The selected node does not contain a dataset object");
     }
@@ -333,6 +334,32 @@ public class OutputPanel extends VerticalLayout
     }
 
 
+    private void showDiffTables(VerticalLayout outerLayout, Table dataset, Table prevDataset,
+                                String keyColumn, Node node, Node prevNode) {
+        List<Table> diffList = new Differ().diff(dataset, prevDataset, keyColumn);
+        VerticalLayout prevLayout = createDiffTableLayout(diffList.get(0), prevNode.getLabel());
+        VerticalLayout currLayout = createDiffTableLayout(diffList.get(1), node.getLabel());
+        outerLayout.removeAll();
+        outerLayout.add(prevLayout, currLayout);
+        outerLayout.setFlexGrow(1, prevLayout, currLayout);
+    }
+
+
+    // lists the columns common to both tables, preselecting one that looks like a case id
+    private ComboBox<String> createDiffKeySelector(Table dataset, Table prevDataset) {
+        List<String> columnNames = new ArrayList<>();
+        for (String name : dataset.columnNames()) {
+            if (prevDataset.containsColumn(name)) columnNames.add(name);
+        }
+        ComboBox<String> keyBox = new ComboBox<>("Compare rows by key", columnNames);
+        keyBox.setClearButtonVisible(true);
+        keyBox.setPlaceholder("Whole rows");
+        columnNames.stream().filter(name -> name.toLowerCase().contains("case"))
+                .findFirst().ifPresent(keyBox::setValue);
+        return keyBox;
+    }
+
+
     private VerticalLayout createDiffTableLayout(Table table, String subTitle) {
         VerticalLayout vl = new VerticalLayout();
         Grid<Row> grid = tableToGrid(table);
@@ -31,6 +31,7 @@ import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tech.tablesaw.api.Table;
 
 /**
  * @author Michael Adams
@@ -53,6 +54,7 @@ public class RunnerButtons extends Div implements CanvasSelectionListener {
 
 
     private final Span _label = new Span();
+    private final Span _progress = new Span();
 
 
     public RunnerButtons(GraphRunner runner) {
@@ -104,35 +106,69 @@ public class RunnerButtons extends Div implements CanvasSelectionListener {
 	protected void setState(GraphRunner.RunnerState state) {
 		if (_state != state) {
 			_state = state;
+			if (state != GraphRunner.RunnerState.IDLE) clearProgress();
 			enable();
 		}
 	}
 
 
 	private void action(GraphRunner.RunnerAction runnerAction) {
-		try {
-			_runner.action(runnerAction, _selectedNode);
-			Announcement.success(_selectedNode.getLabel() + " completed successfully");
-		} catch (NodeRunnerException e) {
-			try {
-				_selectedNode.reset();
-			} catch (Exception ex) {
-				// unlikely this will happen
+		action(runnerAction, _selectedNode);
+	}
+
+
+	/**
+	 * Runs, steps and resumes are performed in the background so that this session
+	 * remains responsive; progress is pushed back to the browser as each node
+	 * completes. Stop interrupts the running plugin(s).
+	 * @param runnerAction the action to perform
+	 * @param node the node to perform it on
+	 */
+	protected void action(GraphRunner.RunnerAction runnerAction, Node node) {
+		switch (runnerAction) {
+			case STOP: {
+				_runner.stop();
+				Announcement.show("Workflow stopped");
+				return;
 			}
-			_runner.reset();
-			String msg = "Error in node '" + _selectedNode.getLabel() + "': " + e.getMessage() + ";";
-			if (e.getCause() != null) {
-				msg = msg + " Caused by: " + e.getCause().getMessage();
+			case STEP_BACK: {
+				try {
+					_runner.action(runnerAction, node);
+				} catch (NodeRunnerException e) {
+					handleError(node, e);
+				}
+				return;
 			}
-			Announcement.error(msg);
-			LOG.error(msg, e);
 		}
+
+		_runner.actionAsync(runnerAction, node,
+				() -> UiUtil.access(this, () ->
+						Announcement.success(node.getLabel() + " completed successfully")),
+				e -> UiUtil.access(this, () -> handleError(node, e)));
+	}
+
+
+	private void handleError(Node node, NodeRunnerException e) {
+		try {
+			node.reset();
+		} catch (Exception ex) {
+			// unlikely this will happen
+		}
+		_runner.reset();
+		String msg = "Error in node '" + node.getLabel() + "': " + e.getMessage() + ";";
+		if (e.getCause() != null) {
+			msg = msg + " Caused by: " + e.getCause().getMessage();
+		}
+		Announcement.error(msg);
+		LOG.error(msg, e);
 	}
 
     public void addLabel() {
         _label.getStyle().set("margin-left", "30px");
         _label.getStyle().set("font-style", "italic");
-        add(_label);
+        _progress.getStyle().set("margin-left", "30px");
+        _progress.getStyle().set("font-style", "italic");
+        add(_label, _progress);
     }
 
     public void setLabel(String text) {
@@ -143,6 +179,21 @@ public class RunnerButtons extends Div implements CanvasSelectionListener {
     public void clearLabel() { _label.removeAll(); }
 
 
+    /**
+     * Shows the outcome of the most recent node to finish a run stage
+     * @param node the node
+     * @param verb what the node did
+     * @param table the table the node produced
+     */
+    public void setProgress(Node node, String verb, Table table) {
+        clearProgress();
+        String rows = table != null ? String.format(" (%,d rows)", table.rowCount()) : "";
+        _progress.add(node.getLabel() + " " + verb + rows);
+    }
+
+    public void clearProgress() { _progress.removeAll(); }
+
+
 
     private void createButtons() {
         _runButton = createButton(VaadinIcon.PLAY,
@@ -29,7 +29,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.processdataquality.praeclarus.exception.NodeRunnerException;
 import com.processdataquality.praeclarus.graph.GraphRunner;
 import com.processdataquality.praeclarus.graph.GraphRunnerEvent;
 import com.processdataquality.praeclarus.graph.GraphRunnerEventListener;
@@ -104,10 +103,15 @@ public class WorkflowPanel extends VerticalLayout
 	private final Button _searchButton = createSearchButton();
 	private final Button _clearButton = createClearButton();
 
-	public WorkflowPanel(MainView parent) {
+	/**
+	 * @param parent the main view
+	 * @param maxConcurrency the most nodes of the workflow that may run at once
+	 */
+	public WorkflowPanel(MainView parent, int maxConcurrency) {
 		_parent = parent;
 		_canvas = new Canvas(1600, 800);
 		_runner = new GraphRunner();
+		_runner.setMaxConcurrency(maxConcurrency);     // independent branches in parallel
 		_runner.addNodeRunnerEventListener(this);
 		_runner.addNodeRunnerStateChangeListener(this);
 		_workflow = new Workflow(this, _canvas.getContext());
@@ -122,33 +126,36 @@ public class WorkflowPanel extends VerticalLayout
 
 	@Override
 	public void pluginUICloseEvent(ButtonAction buttonAction, Node node) {
-		try {
-			_runner.action(GraphRunner.RunnerAction.RESUME, node); // button action doesn't matter
-		} catch (NodeRunnerException e) {
-			Announcement.error(e.getMessage());
-			LOG.error("Error attempting to continue after closing plugin UI", e);
-		}
+		_runnerButtons.action(GraphRunner.RunnerAction.RESUME, node); // button action doesn't matter
 	}
 
 	@Override
 	public void runnerStateChanged(GraphRunner.RunnerState state) {
-		_runnerButtons.setState(state);
-		enableButtons(state, _workflow.getSelectedVertex());
+		UiUtil.access(this, () -> {
+			_runnerButtons.setState(state);
+			enableButtons(state, _workflow.getSelectedVertex());
+		});
 	}
 
 	@Override
 	public void runnerEvent(GraphRunnerEvent event) {
-		if (event.getEventType() == EventType.NODE_PAUSED) {
+		UiUtil.access(this, () -> {
 			Node node = event.getNode();
-
-			// pattern detected but not yet repaired
-			if (node instanceof PatternNode && !node.hasCompleted()) {
-				PluginUI ui = ((AbstractDataPattern) node.getPlugin()).getUI();
-				if (ui != null) {
-					new PluginUIDialog(ui, node, this).open();
+			if (event.getEventType() == EventType.NODE_PAUSED && node instanceof PatternNode) {
+				_runnerButtons.setProgress(node, "detected", ((PatternNode) node).getDetected());
+
+				// pattern detected but not yet repaired
+				if (!node.hasCompleted()) {
+					PluginUI ui = ((AbstractDataPattern) node.getPlugin()).getUI();
+					if (ui != null) {
+						new PluginUIDialog(ui, node, this).open();
+					}
 				}
 			}
-		}
+			else if (event.getEventType() == EventType.NODE_COMPLETED) {
+				_runnerButtons.setProgress(node, "completed", node.getOutput());
+			}
+		});
 	}
 
 	public boolean hasChanges() {
@@ -308,6 +315,9 @@ public class WorkflowPanel extends VerticalLayout
 			for (Option option : options.values()) {
 				if (option instanceof ColumnNameListOption) {
 					List<String> colNames = new ArrayList<>();
+					if (((ColumnNameListOption) option).isOptional()) {
+						colNames.add(ColumnNameListOption.NONE);   // listed first, so the default
+					}
 					for (Table table : inputs) {
 						colNames.addAll(table.columnNames());
 					}
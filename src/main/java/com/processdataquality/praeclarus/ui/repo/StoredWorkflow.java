@@ -19,9 +19,12 @@ package com.processdataquality.praeclarus.ui.repo;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
+import com.processdataquality.praeclarus.batch.RepairPolicy;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.Id;
 import javax.persistence.Transient;
 
@@ -40,6 +43,10 @@ public class StoredWorkflow {
     @Column(length=102400)
     private String json;
 
+    // how paused pattern nodes are resumed when this workflow is run headless
+    @Enumerated(EnumType.STRING)
+    private RepairPolicy repairPolicy;
+
     @Transient
     JsonObject jsonObject;
 
@@ -72,6 +79,14 @@ public class StoredWorkflow {
         this.shared = shared;
     }
 
+    public RepairPolicy getRepairPolicy() {
+        return repairPolicy != null ? repairPolicy : RepairPolicy.REPAIR_ALL;
+    }
+
+    public void setRepairPolicy(RepairPolicy policy) {
+        this.repairPolicy = policy;
+    }
+
     public String getWorkflowJson() {
         return json;
     }
@@ -113,6 +128,7 @@ public class StoredWorkflow {
         json.add("name", getName());
         json.add("owner", owner);
         json.add("public", isShared());
+        json.add("repairPolicy", getRepairPolicy().name());
         json.add("description", getDescription());
         json.add("creationTime", getCreationTime());
         json.add("lastSavedTime", getLastSavedTime());
@@ -67,11 +67,16 @@ public class WorkflowStore {
     public static StoredWorkflow save(Workflow workflow) {
         workflow.getGraph().updateLastSavedTime();
         String json = workflow.asJson().toString();      // also triggers props update
-        return save(new StoredWorkflow(
+        StoredWorkflow stored = new StoredWorkflow(
                 workflow.getGraph().getId(),
                 workflow.getGraph().getOwner(),
                 workflow.getGraph().isShared(),
-                json));
+                json);
+
+        // keep any repair policy set for headless runs
+        repository.findById(stored.getId()).ifPresent(
+                existing -> stored.setRepairPolicy(existing.getRepairPolicy()));
+        return save(stored);
     }
 
     public static StoredWorkflow save(StoredWorkflow storedWorkflow) {
@@ -21,18 +21,22 @@ import com.vaadin.flow.component.ClickEvent;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.ComponentEventListener;
 import com.vaadin.flow.component.Html;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.data.provider.ListDataProvider;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.VaadinSession;
 import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.Table;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author Michael Adams
@@ -65,6 +69,34 @@ public class UiUtil {
     }
 
 
+    /**
+     * Runs an update to a component. If called from a background thread (e.g. by a
+     * workflow run), the update is queued with the component's UI and pushed to the
+     * browser; if the current thread already holds the session lock it runs directly.
+     * An update from a background thread to a component that is not attached to a UI
+     * is dropped, as there is no session lock to run it under
+     * @param c the component to update
+     * @param command the update to run
+     */
+    public static void access(Component c, Command command) {
+        Optional<UI> ui = c.getUI();
+        if (ui.isPresent()) {
+            if (ui.get().getSession().hasLock()) {
+                command.execute();
+            }
+            else {
+                ui.get().access(command);
+            }
+        }
+        else {
+            VaadinSession session = VaadinSession.getCurrent();
+            if (session != null && session.hasLock()) {
+                command.execute();           // a detached component, on a UI thread
+            }
+        }
+    }
+
+
     public static void setStyle(Component c, String key, String value) {
         c.getElement().getStyle().set(key, value);
     }
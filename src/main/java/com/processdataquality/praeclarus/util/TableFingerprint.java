@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.util;
+
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Computes a content hash of a table's schema and values, so that two tables with
+ * the same content have the same fingerprint regardless of their names.
+ *
+ * Hashing is linear in the number of cells, so fingerprints are remembered against
+ * the table's column objects rather than the table instance. Copy-on-write views
+ * (see TableView) share their source's columns, so every view of a table - such as
+ * the inputs a node hands its plugin on each run - reuses the one fingerprint.
+ * A remembered fingerprint is reused only while the row count and the column
+ * objects, in order, are the same - replacing, adding or removing columns or rows
+ * invalidates it. Code that sets individual cell values in place should call
+ * forget() afterwards.
+ */
+public class TableFingerprint {
+
+    // remembered fingerprints, by the first column of the tables they were made from
+    private static final Map<Column<?>, List<Stamp>> STAMPS = new WeakHashMap<>();
+    private static final int MAX_STAMPS_PER_COLUMN = 8;
+
+    private TableFingerprint() { }
+
+
+    /**
+     * @param table the table to fingerprint
+     * @return a hex string uniquely (for practical purposes) identifying the
+     * table's content
+     */
+    public static String of(Table table) {
+        if (table.columnCount() == 0) return compute(table);
+        Column<?> first = table.column(0);
+        synchronized (STAMPS) {
+            List<Stamp> stamps = STAMPS.get(first);
+            if (stamps != null) {
+                for (Stamp stamp : stamps) {
+                    if (stamp.matches(table)) return stamp.fingerprint;
+                }
+            }
+        }
+        String fingerprint = compute(table);
+        synchronized (STAMPS) {
+            List<Stamp> stamps = STAMPS.computeIfAbsent(first, c -> new ArrayList<>());
+            stamps.removeIf(Stamp::isStale);
+            if (stamps.size() == MAX_STAMPS_PER_COLUMN) stamps.remove(0);
+            stamps.add(new Stamp(table, fingerprint));
+        }
+        return fingerprint;
+    }
+
+
+    /**
+     * Discards any remembered fingerprint for a table
+     * @param table the table that has been modified in place
+     */
+    public static void forget(Table table) {
+        if (table.columnCount() == 0) return;
+        synchronized (STAMPS) {
+            List<Stamp> stamps = STAMPS.get(table.column(0));
+            if (stamps != null) stamps.removeIf(stamp -> stamp.matches(table));
+        }
+    }
+
+
+    /**
+     * @param parts any number of strings
+     * @return a hex SHA-256 digest of the parts
+     */
+    public static String digest(String... parts) {
+        MessageDigest md = newDigest();
+        for (String part : parts) {
+            update(md, part);
+        }
+        return toHex(md.digest());
+    }
+
+
+    private static String compute(Table table) {
+        MessageDigest md = newDigest();
+        for (Column<?> column : table.columns()) {
+            update(md, column.name());
+            update(md, column.type().name());
+        }
+        for (Column<?> column : table.columns()) {
+            for (int i = 0; i < column.size(); i++) {
+                update(md, column.isMissing(i) ? null : column.getUnformattedString(i));
+            }
+        }
+        return toHex(md.digest());
+    }
+
+
+    // length-prefixed so that adjacent values can't run together
+    private static void update(MessageDigest md, String s) {
+        if (s == null) {
+            md.update((byte) 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        md.update((byte) 1);
+        md.update((byte) (bytes.length >>> 24));
+        md.update((byte) (bytes.length >>> 16));
+        md.update((byte) (bytes.length >>> 8));
+        md.update((byte) bytes.length);
+        md.update(bytes);
+    }
+
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);  // never
+        }
+    }
+
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+
+    // a fingerprint, with the row count and the columns (weakly held) it was made from
+    private static class Stamp {
+        final int rowCount;
+        final List<WeakReference<Column<?>>> columns = new ArrayList<>();
+        final String fingerprint;
+
+        Stamp(Table table, String fingerprint) {
+            this.rowCount = table.rowCount();
+            for (Column<?> column : table.columns()) {
+                columns.add(new WeakReference<>(column));
+            }
+            this.fingerprint = fingerprint;
+        }
+
+        boolean matches(Table table) {
+            if (table.rowCount() != rowCount || table.columnCount() != columns.size()) {
+                return false;
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).get() != table.column(i)) return false;
+            }
+            return true;
+        }
+
+        boolean isStale() {
+            for (WeakReference<Column<?>> column : columns) {
+                if (column.get() == null) return true;
+            }
+            return false;
+        }
+    }
+
+}
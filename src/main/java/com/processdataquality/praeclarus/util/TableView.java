@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.util;
+
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Copy-on-write views of tables, so that one physical table can be handed to any
+ * number of consumers without copying it and without them affecting each other.
+ *
+ * A view is a new table that shares the column objects of its source. Structural
+ * changes to a view - adding, removing, replacing or reordering columns, renaming
+ * the table, or filtering and sorting into a new table - never reach the source or
+ * other views. What a view must not do is change a shared column itself (set or
+ * append values, rename it, etc.); code that needs to do so calls writableColumn()
+ * first, which swaps in a private copy of just that column.
+ */
+public class TableView {
+
+    // for each view, the columns it still shares with its source
+    private static final Map<Table, Set<Column<?>>> SHARED = new WeakHashMap<>();
+
+    private TableView() { }
+
+
+    /**
+     * Creates a copy-on-write view of a table
+     * @param table the source table
+     * @return a new table with the same name, sharing the source table's columns
+     */
+    public static Table of(Table table) {
+        Table view = Table.create(table.name());
+        Set<Column<?>> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Column<?> column : table.columns()) {
+            view.addColumns(column);
+            shared.add(column);
+        }
+        synchronized (SHARED) {
+            SHARED.put(view, shared);
+        }
+        return view;
+    }
+
+
+    /**
+     * Gets a column that may be modified in place. If the column is shared with the
+     * view's source, it is first replaced in the view by a private copy
+     * @param table a view (or any other table)
+     * @param name the column's name
+     * @return the column, safe to modify
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Column<?>> T writableColumn(Table table, String name) {
+        Column<?> column = table.column(name);
+        synchronized (SHARED) {
+            Set<Column<?>> shared = SHARED.get(table);
+            if (shared != null && shared.remove(column)) {
+                Column<?> copy = column.copy();
+                table.replaceColumn(table.columnIndex(column), copy);
+                return (T) copy;
+            }
+        }
+        return (T) column;
+    }
+
+}